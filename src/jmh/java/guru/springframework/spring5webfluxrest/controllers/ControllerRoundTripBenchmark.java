@@ -0,0 +1,119 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring5webfluxrest.changes.ChangeFeeds;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
+import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Full request handling (routing, argument resolution, controller, encoding) of the
+ * hot endpoints, bound directly to the controllers with stubbed repositories so the
+ * datastore does not contribute.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ControllerRoundTripBenchmark {
+
+    private static final String VENDORS_URL = "/api/v1/vendors";
+    private static final String CATEGORIES_URL = "/api/v1/categories";
+
+    @Param({"100"})
+    public int listSize;
+
+    private WebTestClient vendorClient;
+    private WebTestClient categoryClient;
+
+    private final Vendor vendorPatch = Vendor.builder().lastName("Miggins").build();
+
+    @Setup
+    public void setUp() {
+        List<Vendor> vendors = new ArrayList<>(listSize);
+        List<Category> categories = new ArrayList<>(listSize);
+
+        for (int i = 0; i < listSize; i++) {
+            vendors.add(Vendor.builder().id(String.valueOf(i)).firstName("Bob").lastName("Bobbins" + i).build());
+            categories.add(Category.builder().id(String.valueOf(i)).description("Category" + i).build());
+        }
+
+        VendorRepository vendorRepository = Mockito.mock(VendorRepository.class);
+        given(vendorRepository.findById(anyString())).willReturn(Mono.just(vendors.get(0)));
+        given(vendorRepository.findAll()).willReturn(Flux.fromIterable(vendors));
+        given(vendorRepository.patch(anyString(), any(Vendor.class), isNull())).willReturn(Mono.just(vendors.get(0)));
+
+        CategoryRepository categoryRepository = Mockito.mock(CategoryRepository.class);
+        given(categoryRepository.findById(anyString())).willReturn(Mono.just(categories.get(0)));
+        given(categoryRepository.findAll()).willReturn(Flux.fromIterable(categories));
+
+        ApiProperties apiProperties = new ApiProperties();
+        ChangeFeeds changeFeeds = new ChangeFeeds(apiProperties, new SimpleMeterRegistry());
+        vendorClient = WebTestClient.bindToController(
+                new VendorController(vendorRepository, categoryRepository, apiProperties, changeFeeds, new ObjectMapper())).build();
+        categoryClient = WebTestClient.bindToController(
+                new CategoryController(categoryRepository, vendorRepository, apiProperties, changeFeeds, new ObjectMapper())).build();
+    }
+
+    @Benchmark
+    public Vendor getVendorById() {
+        return vendorClient.get().uri(VENDORS_URL + "/0")
+                .exchange()
+                .expectBody(Vendor.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public List<Vendor> getAllVendors() {
+        return vendorClient.get().uri(VENDORS_URL)
+                .exchange()
+                .expectBodyList(Vendor.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public Vendor patchVendor() {
+        return vendorClient.patch().uri(VENDORS_URL + "/0")
+                .syncBody(vendorPatch)
+                .exchange()
+                .expectBody(Vendor.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public Category getCategoryById() {
+        return categoryClient.get().uri(CATEGORIES_URL + "/0")
+                .exchange()
+                .expectBody(Category.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public List<Category> getCategories() {
+        return categoryClient.get().uri(CATEGORIES_URL)
+                .exchange()
+                .expectBodyList(Category.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
@@ -0,0 +1,128 @@
+package guru.springframework.spring5webfluxrest.domain;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson encode/decode cost of single documents and lists in each wire format, using
+ * the same ObjectMapper defaults as the WebFlux codecs. The payload sizes of the
+ * formats are compared by {@code JacksonBinaryCodecTest}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class JacksonCodecBenchmark {
+
+    @Param({"10", "1000"})
+    public int listSize;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+
+    private Vendor vendor;
+    private List<Vendor> vendors;
+    private byte[] vendorBytes;
+    private byte[] vendorListBytes;
+    private JavaType vendorListType;
+
+    private Category category;
+    private List<Category> categories;
+    private byte[] categoryBytes;
+    private byte[] categoryListBytes;
+    private JavaType categoryListType;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().factory(factory(format)).build();
+        vendorListType = objectMapper.getTypeFactory().constructCollectionType(List.class, Vendor.class);
+        categoryListType = objectMapper.getTypeFactory().constructCollectionType(List.class, Category.class);
+
+        // Fixed seed so every run encodes exactly the same payloads
+        Random random = new Random(42);
+        vendors = new ArrayList<>(listSize);
+        categories = new ArrayList<>(listSize);
+
+        for (int i = 0; i < listSize; i++) {
+            vendors.add(Vendor.builder()
+                    .id(String.format("%024x", i))
+                    .firstName("First" + random.nextInt(10_000))
+                    .lastName("Last" + random.nextInt(100_000))
+                    .build());
+            categories.add(Category.builder()
+                    .id(String.format("%024x", i))
+                    .description("Category" + random.nextInt(1_000))
+                    .build());
+        }
+
+        vendor = vendors.get(0);
+        category = categories.get(0);
+        vendorBytes = objectMapper.writeValueAsBytes(vendor);
+        vendorListBytes = objectMapper.writeValueAsBytes(vendors);
+        categoryBytes = objectMapper.writeValueAsBytes(category);
+        categoryListBytes = objectMapper.writeValueAsBytes(categories);
+    }
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeVendor() throws IOException {
+        return objectMapper.writeValueAsBytes(vendor);
+    }
+
+    @Benchmark
+    public Vendor decodeVendor() throws IOException {
+        return objectMapper.readValue(vendorBytes, Vendor.class);
+    }
+
+    @Benchmark
+    public byte[] encodeVendorList() throws IOException {
+        return objectMapper.writeValueAsBytes(vendors);
+    }
+
+    @Benchmark
+    public List<Vendor> decodeVendorList() throws IOException {
+        return objectMapper.readValue(vendorListBytes, vendorListType);
+    }
+
+    @Benchmark
+    public byte[] encodeCategory() throws IOException {
+        return objectMapper.writeValueAsBytes(category);
+    }
+
+    @Benchmark
+    public Category decodeCategory() throws IOException {
+        return objectMapper.readValue(categoryBytes, Category.class);
+    }
+
+    @Benchmark
+    public byte[] encodeCategoryList() throws IOException {
+        return objectMapper.writeValueAsBytes(categories);
+    }
+
+    @Benchmark
+    public List<Category> decodeCategoryList() throws IOException {
+        return objectMapper.readValue(categoryListBytes, categoryListType);
+    }
+}
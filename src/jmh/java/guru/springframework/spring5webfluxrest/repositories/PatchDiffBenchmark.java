@@ -0,0 +1,44 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of turning a PATCH body into the conditional find-and-modify, i.e.
+ * everything a PATCH does before it reaches the datastore.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PatchDiffBenchmark {
+
+    private static final String ID = "5ab0e1e2c0a7f2f1d4a1b2c3";
+
+    private final Vendor vendorPatch = Vendor.builder().firstName("Bob").lastName("Miggins").build();
+
+    private final Category categoryPatch = Category.builder().description("Cheeses").build();
+
+    @Benchmark
+    public Map<String, Object> vendorChanges() {
+        return VendorRepositoryImpl.changesOf(vendorPatch);
+    }
+
+    @Benchmark
+    public void vendorFindAndModify(Blackhole blackhole) {
+        Map<String, Object> changes = VendorRepositoryImpl.changesOf(vendorPatch);
+        blackhole.consume(Patches.differingQuery(ID, changes).getQueryObject());
+        blackhole.consume(Patches.update(changes).getUpdateObject());
+    }
+
+    @Benchmark
+    public void categoryFindAndModify(Blackhole blackhole) {
+        Map<String, Object> changes = CategoryRepositoryImpl.changesOf(categoryPatch);
+        blackhole.consume(Patches.differingQuery(ID, changes).getQueryObject());
+        blackhole.consume(Patches.update(changes).getUpdateObject());
+    }
+}
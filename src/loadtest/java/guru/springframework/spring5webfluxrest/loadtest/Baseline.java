@@ -0,0 +1,77 @@
+package guru.springframework.spring5webfluxrest.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a load test report with the report of an earlier run.
+ * <p>
+ * An endpoint regresses when its p99 or p99.9 latency grows, or its throughput falls,
+ * by more than the tolerance. So does one whose error rate grows by more than the
+ * tolerance plus a tenth of a percent, so that errors appearing where there were none
+ * count. Latencies below a millisecond are compared as a millisecond, so noise in tiny
+ * values is not reported.
+ */
+class Baseline {
+
+    private static final double MIN_MILLIS = 1.0;
+
+    private static final double MIN_ERROR_RATE = 0.001;
+
+    private final Map<String, Map<String, Object>> endpoints;
+
+    private final double tolerance;
+
+    Baseline(Map<String, Map<String, Object>> endpoints, double tolerance) {
+        this.endpoints = endpoints;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return one line per regression; empty if there are none
+     */
+    List<String> regressions(Map<String, Map<String, Object>> current) {
+        List<String> regressions = new ArrayList<>();
+
+        current.forEach((endpoint, now) -> {
+            Map<String, Object> before = endpoints.get(endpoint);
+            if (before == null) {
+                return;
+            }
+
+            latency(regressions, endpoint, "p99Millis", before, now);
+            latency(regressions, endpoint, "p999Millis", before, now);
+
+            double throughputBefore = value(before, "throughput");
+            double throughputNow = value(now, "throughput");
+            if (throughputNow < throughputBefore * (1 - tolerance)) {
+                regressions.add(String.format("%s throughput fell from %.1f/s to %.1f/s",
+                        endpoint, throughputBefore, throughputNow));
+            }
+
+            double errorsBefore = value(before, "errorRate");
+            double errorsNow = value(now, "errorRate");
+            if (errorsNow > errorsBefore * (1 + tolerance) + MIN_ERROR_RATE) {
+                regressions.add(String.format("%s error rate rose from %.3f to %.3f", endpoint, errorsBefore, errorsNow));
+            }
+        });
+        return regressions;
+    }
+
+    private void latency(List<String> regressions, String endpoint, String metric,
+                         Map<String, Object> before, Map<String, Object> now) {
+        double millisBefore = Math.max(MIN_MILLIS, value(before, metric));
+        double millisNow = value(now, metric);
+
+        if (millisNow > millisBefore * (1 + tolerance)) {
+            regressions.add(String.format("%s %s rose from %.3f ms to %.3f ms",
+                    endpoint, metric, value(before, metric), millisNow));
+        }
+    }
+
+    private static double value(Map<String, Object> metrics, String name) {
+        Object value = metrics.get(name);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+}
@@ -0,0 +1,75 @@
+package guru.springframework.spring5webfluxrest.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcomes of the measured requests to one endpoint.
+ * <p>
+ * Latency runs from when a request was due to start, not from when it was sent, so
+ * time spent waiting behind a stalled client or server is included rather than
+ * silently omitted.
+ */
+class EndpointStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+
+    private final LongAdder errors = new LongAdder();
+
+    private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+
+    void record(long dueNanos, int status) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueNanos);
+        latency.recordValue(Math.min(Math.max(micros, 0), MAX_LATENCY_MICROS));
+        statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+
+        if (status >= 400) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Records a request that failed without a response (status 0 in the report).
+     */
+    void recordFailure(long dueNanos) {
+        record(dueNanos, 0);
+        errors.increment();
+    }
+
+    Map<String, Object> report(double seconds) {
+        long count = latency.getTotalCount();
+        long failed = errors.sum();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("count", count);
+        report.put("throughput", round((count - failed) / seconds));
+        report.put("errorRate", count == 0 ? 0.0 : round((double) failed / count));
+        report.put("p50Millis", millis(latency.getValueAtPercentile(50)));
+        report.put("p99Millis", millis(latency.getValueAtPercentile(99)));
+        report.put("p999Millis", millis(latency.getValueAtPercentile(99.9)));
+        report.put("maxMillis", millis(latency.getMaxValue()));
+
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        statuses.keySet().stream().sorted()
+                .forEach(status -> byStatus.put(String.valueOf(status), statuses.get(status).get()));
+        report.put("statuses", byStatus);
+        return report;
+    }
+
+    private static double millis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
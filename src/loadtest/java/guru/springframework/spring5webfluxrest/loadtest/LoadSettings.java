@@ -0,0 +1,72 @@
+package guru.springframework.spring5webfluxrest.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load test settings, read from {@code loadtest.*} system properties (the Gradle task
+ * passes {@code -Ploadtest.*} project properties through).
+ */
+class LoadSettings {
+
+    /**
+     * Requests started per second, whether or not earlier ones have completed.
+     */
+    final int rps = Integer.getInteger("loadtest.rps", 500);
+
+    /**
+     * Traffic before measuring starts, to let the JIT and the connection pool settle.
+     */
+    final Duration warmup = Duration.parse("PT" + System.getProperty("loadtest.warmup", "10s"));
+
+    final Duration duration = Duration.parse("PT" + System.getProperty("loadtest.duration", "30s"));
+
+    /**
+     * Requests in flight beyond which new ones are skipped and counted as dropped, so
+     * an overloaded server cannot exhaust the client.
+     */
+    final int maxInFlight = Integer.getInteger("loadtest.maxInFlight", 2000);
+
+    /**
+     * Vendors generated at startup, ids of which the GET and PATCH traffic picks from.
+     */
+    final int vendors = Integer.getInteger("loadtest.vendors", 10_000);
+
+    /**
+     * Relative weights of the endpoints, as {@code name:weight} pairs.
+     */
+    final Map<String, Integer> mix = parseMix(System.getProperty("loadtest.mix", "get:60,list:10,post:10,patch:20"));
+
+    final String report = System.getProperty("loadtest.report", "build/reports/loadtest/report.json");
+
+    /**
+     * The report of an earlier run to compare against, or null not to compare.
+     */
+    final String baseline = System.getProperty("loadtest.baseline");
+
+    /**
+     * How much worse than the baseline a latency, throughput or error rate may get, as
+     * a fraction of the baseline value.
+     */
+    final double tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.2"));
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException(String.format("Bad mix entry <%s>, expected name:weight", entry));
+            }
+            weights.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rps for %ss after %ss warmup, mix %s, at most %d in flight",
+                rps, duration.getSeconds(), warmup.getSeconds(), mix, maxInFlight);
+    }
+}
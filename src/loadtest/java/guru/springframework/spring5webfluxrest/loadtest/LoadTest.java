@@ -0,0 +1,255 @@
+package guru.springframework.spring5webfluxrest.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import guru.springframework.spring5webfluxrest.Spring5WebfluxRestApplication;
+import guru.springframework.spring5webfluxrest.domain.CursorPage;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Drives the whole stack (Netty, WebFlux, the controllers and the in-memory engine)
+ * with open-model HTTP traffic and reports latency percentiles, throughput and error
+ * rates per endpoint. Run with {@code ./gradlew loadtest}.
+ * <p>
+ * Requests start at a fixed rate regardless of how many are still in flight, as real
+ * clients arrive, so a slow server shows up as growing latency rather than as a
+ * politely reduced request rate.
+ */
+public class LoadTest {
+
+    private static final String VENDORS = "/api/v1/vendors";
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final int LIST_SIZE = 50;
+
+    private static final int POST_SIZE = 10;
+
+    private final LoadSettings settings;
+
+    private final WebClient client;
+
+    private final List<String> ids;
+
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+
+    private final Map<String, Function<Long, Mono<ClientResponse>>> endpoints = new LinkedHashMap<>();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private LoadTest(LoadSettings settings, WebClient client, List<String> ids) {
+        this.settings = settings;
+        this.client = client;
+        this.ids = ids;
+
+        endpoints.put("get", tick -> client.get().uri(VENDORS + "/{id}", randomId()).exchange());
+        endpoints.put("list", tick -> client.get().uri(VENDORS + "?limit={limit}", LIST_SIZE).exchange());
+        endpoints.put("post", tick -> client.post().uri(VENDORS)
+                .contentType(MediaType.APPLICATION_STREAM_JSON)
+                .body(Flux.range(0, POST_SIZE).map(i -> vendor("Load", "Test" + tick)), Vendor.class)
+                .exchange());
+        endpoints.put("patch", tick -> client.patch().uri(VENDORS + "/{id}", randomId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(vendor(null, "Patched" + tick))
+                .exchange());
+
+        settings.mix.keySet().forEach(name -> {
+            if (!endpoints.containsKey(name)) {
+                throw new IllegalArgumentException(String.format("Unknown endpoint <%s>, expected one of %s",
+                        name, endpoints.keySet()));
+            }
+            stats.put(name, new EndpointStats());
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadSettings settings = new LoadSettings();
+
+        // As command line arguments these take precedence over application.properties
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        arguments.add("--server.port=0");
+        arguments.add("--api.synthetic.vendors=" + settings.vendors);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring5WebfluxRestApplication.class)
+                .profiles("inmemory")
+                .run(arguments.toArray(new String[0]));
+
+        int exitCode;
+        try {
+            WebClient client = WebClient.create("http://localhost:" + context.getEnvironment()
+                    .getProperty("local.server.port"));
+
+            exitCode = new LoadTest(settings, client, vendorIds(client)).run();
+        } finally {
+            context.close();
+        }
+        System.exit(exitCode);
+    }
+
+    private int run() throws IOException {
+        System.out.println("Load test: " + settings);
+
+        long periodNanos = 1_000_000_000L / settings.rps;
+        long warmupTicks = settings.warmup.toNanos() / periodNanos;
+        long measuredTicks = settings.duration.toNanos() / periodNanos;
+        String[] schedule = schedule();
+        long start = System.nanoTime();
+
+        Flux.interval(Duration.ofNanos(periodNanos))
+                .take(warmupTicks + measuredTicks)
+                // Past the in-flight limit, skip the request rather than fall behind schedule
+                .onBackpressureDrop(tick -> {
+                    if (tick >= warmupTicks) {
+                        dropped.incrementAndGet();
+                    }
+                })
+                .flatMap(tick -> {
+                    String endpoint = schedule[(int) (tick % schedule.length)];
+                    long due = start + (tick + 1) * periodNanos;
+                    EndpointStats endpointStats = tick >= warmupTicks ? stats.get(endpoint) : null;
+
+                    return endpoints.get(endpoint).apply(tick)
+                            .flatMap(response -> response.bodyToMono(Void.class)
+                                    .then(Mono.fromRunnable(() -> {
+                                        if (endpointStats != null) {
+                                            endpointStats.record(due, response.statusCode().value());
+                                        }
+                                    })))
+                            .onErrorResume(e -> Mono.fromRunnable(() -> {
+                                if (endpointStats != null) {
+                                    endpointStats.recordFailure(due);
+                                }
+                            }));
+                }, settings.maxInFlight)
+                .blockLast();
+
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        stats.forEach((name, endpointStats) ->
+                results.put(name, endpointStats.report(settings.duration.toMillis() / 1000.0)));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("rps", settings.rps);
+        report.put("durationSeconds", settings.duration.getSeconds());
+        report.put("dropped", dropped.get());
+        report.put("endpoints", results);
+
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File reportFile = new File(settings.report);
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        objectMapper.writeValue(reportFile, report);
+
+        System.out.println(objectMapper.writeValueAsString(report));
+        System.out.println("Report written to " + reportFile.getAbsolutePath());
+
+        return compare(objectMapper, results);
+    }
+
+    private int compare(ObjectMapper objectMapper, Map<String, Map<String, Object>> results) throws IOException {
+        if (settings.baseline == null) {
+            return 0;
+        }
+
+        Map<String, Object> baselineReport = objectMapper.readValue(new File(settings.baseline),
+                new TypeReference<Map<String, Object>>() {
+                });
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> baselineEndpoints =
+                (Map<String, Map<String, Object>>) baselineReport.get("endpoints");
+
+        List<String> regressions = new Baseline(baselineEndpoints, settings.tolerance).regressions(results);
+
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions against " + settings.baseline);
+            return 0;
+        }
+
+        System.out.println("Regressions against " + settings.baseline + ":");
+        regressions.forEach(regression -> System.out.println("  " + regression));
+        return 1;
+    }
+
+    /**
+     * One endpoint name per slot in proportion to its weight, interleaved so that each
+     * endpoint's requests are spread evenly over time.
+     */
+    private String[] schedule() {
+        int total = settings.mix.values().stream().mapToInt(Integer::intValue).sum();
+        String[] schedule = new String[total];
+        Map<String, Integer> issued = new LinkedHashMap<>();
+
+        for (int slot = 0; slot < total; slot++) {
+            String next = null;
+            double furthestBehind = Double.NEGATIVE_INFINITY;
+
+            // Pick the endpoint furthest behind its share so far
+            for (Map.Entry<String, Integer> weight : settings.mix.entrySet()) {
+                double behind = (slot + 1) * (double) weight.getValue() / total
+                        - issued.getOrDefault(weight.getKey(), 0);
+                if (behind > furthestBehind) {
+                    furthestBehind = behind;
+                    next = weight.getKey();
+                }
+            }
+            schedule[slot] = next;
+            issued.merge(next, 1, Integer::sum);
+        }
+        return schedule;
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private static Vendor vendor(String firstName, String lastName) {
+        return Vendor.builder().firstName(firstName).lastName(lastName).build();
+    }
+
+    /**
+     * Pages through the vendors once to learn the ids to address.
+     */
+    private static List<String> vendorIds(WebClient client) {
+        List<String> ids = new ArrayList<>();
+        String after = null;
+
+        do {
+            WebClient.RequestHeadersSpec<?> request = after == null
+                    ? client.get().uri(VENDORS + "?limit={limit}", PAGE_SIZE)
+                    : client.get().uri(VENDORS + "?limit={limit}&after={after}", PAGE_SIZE, after);
+
+            CursorPage<Vendor> page = request
+                    .retrieve()
+                    .bodyToMono(new ParameterizedTypeReference<CursorPage<Vendor>>() {
+                    })
+                    .block();
+
+            page.getItems().forEach(vendor -> ids.add(vendor.getId()));
+            after = page.getNext();
+        } while (after != null);
+
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No vendors to address");
+        }
+        return ids;
+    }
+}
@@ -1,9 +1,12 @@
 package guru.springframework.spring5webfluxrest;
 
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(ApiProperties.class)
 public class Spring5WebfluxRestApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,68 @@
+package guru.springframework.spring5webfluxrest.blocking;
+
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingMethod;
+import reactor.blockhound.BlockingOperationError;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Instruments the JDK's blocking methods so that calling one on a thread that must
+ * never block (a Netty event loop, or a Reactor parallel or single worker) reaches a
+ * handler, which either throws or reports it.
+ * <p>
+ * The instrumentation is JVM wide and can only be installed once; installing again
+ * just replaces the handler. Blocking inside logging is allowed, so a handler may log,
+ * as are the waits of the thread pools themselves, which Reactor 3.1 does not declare.
+ */
+public final class BlockingCallDetector {
+
+    /**
+     * Fails the blocking call with a {@link BlockingOperationError}.
+     */
+    public static final Consumer<BlockingMethod> FAIL = method -> {
+        throw new BlockingOperationError(method);
+    };
+
+    private static final String[] NON_BLOCKING_THREADS = {"reactor-http-", "parallel-", "single-"};
+
+    private static final AtomicBoolean installed = new AtomicBoolean();
+
+    private static volatile Consumer<BlockingMethod> handler = FAIL;
+
+    private BlockingCallDetector() {
+    }
+
+    public static void install(Consumer<BlockingMethod> onBlockingCall) {
+        handler = onBlockingCall;
+
+        if (installed.compareAndSet(false, true)) {
+            BlockHound.builder()
+                    .nonBlockingThreadPredicate(current -> current.or(BlockingCallDetector::isNonBlocking))
+                    .allowBlockingCallsInside("ch.qos.logback.classic.Logger", "callAppenders")
+                    // An idle worker waiting for its next task, and the short wait on the
+                    // queue's lock while scheduling one
+                    .allowBlockingCallsInside(ThreadPoolExecutor.class.getName(), "getTask")
+                    .allowBlockingCallsInside(ScheduledThreadPoolExecutor.class.getName() + "$DelayedWorkQueue", "offer")
+                    .blockingMethodCallback(method -> handler.accept(method))
+                    .install();
+        }
+    }
+
+    /**
+     * Threads are recognised by the names their pools give them.
+     */
+    public static boolean isNonBlocking(Thread thread) {
+        String name = thread.getName();
+
+        for (String prefix : NON_BLOCKING_THREADS) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+package guru.springframework.spring5webfluxrest.blocking;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.blockhound.BlockingMethod;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns on blocking call detection in a running application. Unless told to fail, a
+ * blocking call is let through and counted as {@code reactor.blocking.calls}, tagged
+ * with the method; the first call to each method is also logged with its stack trace.
+ */
+@Component
+@ConditionalOnProperty(name = "api.blocking.detect", havingValue = "true")
+@AllArgsConstructor
+@Slf4j
+public class BlockingCallReporter {
+
+    private final ApiProperties apiProperties;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> reported = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void install() {
+        BlockingCallDetector.install(apiProperties.getBlocking().isFail() ? BlockingCallDetector.FAIL : this::report);
+        log.info("Blocking call detection installed");
+    }
+
+    private void report(BlockingMethod method) {
+        String name = method.getClassName() + "." + method.getName();
+
+        Counter.builder("reactor.blocking.calls")
+                .tag("method", name)
+                .description("Blocking calls made on threads that must not block")
+                .register(meterRegistry)
+                .increment();
+
+        if (reported.add(name)) {
+            log.warn(String.format("Blocking call to %s on thread %s", name, Thread.currentThread().getName()),
+                    new IllegalStateException("Blocking call on a non-blocking thread"));
+        }
+    }
+}
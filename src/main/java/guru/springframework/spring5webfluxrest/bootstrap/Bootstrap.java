@@ -1,5 +1,7 @@
 package guru.springframework.spring5webfluxrest.bootstrap;
 
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
 import guru.springframework.spring5webfluxrest.domain.Category;
 import guru.springframework.spring5webfluxrest.domain.Vendor;
 import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
@@ -8,6 +10,15 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Component
 @AllArgsConstructor
@@ -16,65 +27,118 @@ public class Bootstrap implements CommandLineRunner {
 
     private CategoryRepository categoryRepository;
     private VendorRepository vendorRepository;
+    private ApiProperties apiProperties;
 
     @Override
     public void run(String... args) {
 
         log.info("Bootstrapping data...");
 
-        if (categoryRepository.count().block() == 0) {
-            loadCategories();
-        }
-
-        if (vendorRepository.count().block() == 0) {
-            loadVendors();
-        }
+        // One pipeline, blocked on once: both counts in parallel, then at most one bulk
+        // insert per collection, then the optional synthetic top-up
+        Mono.zip(categoryRepository.count(), vendorRepository.count())
+                .flatMap(counts -> Mono.when(
+                        counts.getT1() == 0 ? loadCategories() : Mono.empty(),
+                        counts.getT2() == 0 ? loadVendors() : Mono.empty()))
+                .then(Mono.defer(this::loadSyntheticData))
+                .block();
     }
 
-    private void loadCategories() {
+    private Mono<Void> loadCategories() {
 
         log.info("Loading category data...");
 
-        categoryRepository.save(Category.builder()
-                .description("Fruits").build())
-                .block();
-        categoryRepository.save(Category.builder()
-                .description("Nuts").build())
-                .block();
-        categoryRepository.save(Category.builder()
-                .description("Breads").build())
-                .block();
-        categoryRepository.save(Category.builder()
-                .description("Meats").build())
-                .block();
-        categoryRepository.save(Category.builder()
-                .description("Eggs").build())
-                .block();
+        List<Category> categories = Arrays.asList(
+                Category.builder().description("Fruits").build(),
+                Category.builder().description("Nuts").build(),
+                Category.builder().description("Breads").build(),
+                Category.builder().description("Meats").build(),
+                Category.builder().description("Eggs").build());
 
-        log.info(String.format("Loaded %s categories", categoryRepository.count().block()));
+        return categoryRepository.insertBatch(categories)
+                .doOnNext(result -> log.info(String.format("Loaded %s categories", result.getInserted())))
+                .then();
     }
 
-    private void loadVendors() {
+    private Mono<Void> loadVendors() {
 
         log.info("Loading vendor data...");
 
-        vendorRepository.save(Vendor.builder()
-                .firstName("Ian").lastName("Gillan").build())
-                .block();
-        vendorRepository.save(Vendor.builder()
-                .firstName("Ronnie James").lastName("Dio").build())
-                .block();
-        vendorRepository.save(Vendor.builder()
-                .firstName("Ozzy").lastName("Osbourne").build())
-                .block();
-        vendorRepository.save(Vendor.builder()
-                .firstName("Rob").lastName("Halford").build())
-                .block();
-        vendorRepository.save(Vendor.builder()
-                .firstName("Jim").lastName("Morrison").build())
-                .block();
+        List<Vendor> vendors = Arrays.asList(
+                Vendor.builder().firstName("Ian").lastName("Gillan").build(),
+                Vendor.builder().firstName("Ronnie James").lastName("Dio").build(),
+                Vendor.builder().firstName("Ozzy").lastName("Osbourne").build(),
+                Vendor.builder().firstName("Rob").lastName("Halford").build(),
+                Vendor.builder().firstName("Jim").lastName("Morrison").build());
+
+        return vendorRepository.insertBatch(vendors)
+                .doOnNext(result -> log.info(String.format("Loaded %s vendors", result.getInserted())))
+                .then();
+    }
+
+    private Mono<Void> loadSyntheticData() {
+        ApiProperties.Synthetic synthetic = apiProperties.getSynthetic();
+
+        if (synthetic.getCategories() <= 0 && synthetic.getVendors() <= 0) {
+            return Mono.empty();
+        }
+
+        // Separate generators keep each collection's data independent of the other's size
+        SyntheticData categoryData = new SyntheticData(synthetic.getSeed());
+        SyntheticData vendorData = new SyntheticData(synthetic.getSeed() + 1);
+
+        return Mono.when(
+                topUp("categories", categoryRepository.count(), synthetic.getCategories(),
+                        categoryData::category, categoryRepository::insertBatch),
+                topUp("vendors", vendorRepository.count(), synthetic.getVendors(),
+                        vendorData::vendor, vendorRepository::insertBatch));
+    }
+
+    /**
+     * Generates documents until the collection holds {@code target} of them, inserting
+     * them in parallel unordered batches and logging progress every tenth of the way.
+     */
+    private <T> Mono<Void> topUp(String name, Mono<Long> count, long target, Supplier<T> generator,
+                                 Function<List<T>, Mono<BulkInsertResult>> insertBatch) {
+        ApiProperties.Synthetic synthetic = apiProperties.getSynthetic();
+
+        return count.flatMap(existing -> {
+            long missing = target - existing;
+
+            if (missing <= 0) {
+                return Mono.empty();
+            }
+
+            log.info(String.format("Generating %s synthetic %s...", missing, name));
+
+            long step = Math.max(synthetic.getBatchSize(), missing / 10);
+            AtomicLong done = new AtomicLong();
+            long start = System.nanoTime();
+
+            return Flux.<T>generate(sink -> sink.next(generator.get()))
+                    .take(missing)
+                    .buffer(synthetic.getBatchSize())
+                    .flatMap(insertBatch, synthetic.getConcurrency())
+                    .doOnNext(result -> {
+                        long batch = result.getInserted() + result.getFailed();
+                        long after = done.addAndGet(batch);
+
+                        if ((after - batch) / step != after / step) {
+                            log.info(String.format("Generated %s of %s %s (%s/s)", after, missing, name,
+                                    perSecond(after, start)));
+                        }
+                    })
+                    .reduce(BulkInsertResult.of(0, 0), BulkInsertResult::plus)
+                    .doOnNext(result -> log.info(String.format("Loaded %s synthetic %s (%s failed) in %s s",
+                            result.getInserted(), name, result.getFailed(),
+                            TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start))))
+                    .then();
+        });
+    }
 
-        log.info(String.format("Loaded %s vendors", vendorRepository.count().block()));
+    private static long perSecond(long count, long start) {
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return count * 1000 / elapsedMillis;
     }
 
 }
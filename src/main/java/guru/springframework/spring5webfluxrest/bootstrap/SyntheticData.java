@@ -0,0 +1,109 @@
+package guru.springframework.spring5webfluxrest.bootstrap;
+
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic generator of plausible vendors and categories.
+ * <p>
+ * Names are drawn from a Zipf distribution over lists ordered by real-world frequency,
+ * so a few names are very common and most are rare, as in production data; this keeps
+ * index selectivity and prefix-search fan-out realistic. Not thread safe: use one
+ * instance per sequential stream.
+ */
+class SyntheticData {
+
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William",
+            "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah",
+            "Charles", "Karen", "Christopher", "Nancy", "Daniel", "Lisa", "Matthew", "Betty", "Anthony",
+            "Margaret", "Mark", "Sandra", "Donald", "Ashley", "Steven", "Kimberly", "Paul", "Emily",
+            "Andrew", "Donna", "Joshua", "Michelle", "Kenneth", "Dorothy", "Kevin", "Carol", "Brian",
+            "Amanda", "George", "Melissa", "Edward", "Deborah", "Ronald", "Stephanie", "Timothy",
+            "Rebecca", "Jason", "Sharon", "Jeffrey", "Laura", "Ryan", "Cynthia", "Jacob", "Kathleen",
+            "Gary", "Amy", "Nicholas", "Shirley", "Eric", "Angela", "Jonathan", "Helen", "Stephen",
+            "Anna", "Larry", "Brenda", "Justin", "Pamela", "Scott", "Nicole", "Brandon", "Emma"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez",
+            "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor",
+            "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez",
+            "Clark", "Ramirez", "Lewis", "Robinson", "Walker", "Young", "Allen", "King", "Wright",
+            "Scott", "Torres", "Nguyen", "Hill", "Flores", "Green", "Adams", "Nelson", "Baker", "Hall",
+            "Rivera", "Campbell", "Mitchell", "Carter", "Roberts", "Gomez", "Phillips", "Evans",
+            "Turner", "Diaz", "Parker", "Cruz", "Edwards", "Collins", "Reyes", "Stewart", "Morris",
+            "Morales", "Murphy", "Cook", "Rogers", "Gutierrez", "Ortiz", "Morgan", "Cooper", "Peterson",
+            "Bailey", "Reed", "Kelly", "Howard", "Ramos", "Kim", "Cox", "Ward", "Richardson", "Watson",
+            "Brooks", "Chavez", "Wood", "James", "Bennett", "Gray", "Mendoza", "Ruiz", "Hughes", "Price",
+            "Alvarez", "Castillo", "Sanders", "Patel", "Myers", "Long", "Ross", "Foster", "Jimenez"
+    };
+
+    private static final String[] PRODUCTS = {
+            "Fruits", "Vegetables", "Breads", "Meats", "Eggs", "Nuts", "Cheeses", "Fish", "Herbs",
+            "Spices", "Grains", "Pastries", "Juices", "Teas", "Coffees", "Oils", "Sauces", "Preserves",
+            "Honey", "Flowers", "Mushrooms", "Seeds", "Sweets", "Wines", "Beers", "Ciders"
+    };
+
+    private static final String[] QUALIFIERS = {
+            "Organic", "Local", "Fresh", "Dried", "Frozen", "Smoked", "Artisan", "Seasonal", "Imported",
+            "Heirloom", "Wild", "Free Range", "Farmhouse", "Gourmet", "Vegan", "Gluten Free"
+    };
+
+    private final Random random;
+
+    private final double[] firstNameWeights = zipf(FIRST_NAMES.length);
+
+    private final double[] lastNameWeights = zipf(LAST_NAMES.length);
+
+    private final double[] productWeights = zipf(PRODUCTS.length);
+
+    SyntheticData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    Vendor vendor() {
+        String lastName = pick(LAST_NAMES, lastNameWeights);
+
+        // About one vendor in ten has a double-barrelled surname, widening the long tail
+        if (random.nextInt(10) == 0) {
+            lastName = lastName + "-" + pick(LAST_NAMES, lastNameWeights);
+        }
+
+        return Vendor.builder()
+                .firstName(pick(FIRST_NAMES, firstNameWeights))
+                .lastName(lastName)
+                .build();
+    }
+
+    Category category() {
+        return Category.builder()
+                .description(QUALIFIERS[random.nextInt(QUALIFIERS.length)] + " " + pick(PRODUCTS, productWeights))
+                .build();
+    }
+
+    private String pick(String[] values, double[] cumulativeWeights) {
+        int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+        return values[index >= 0 ? index : Math.min(-index - 1, values.length - 1)];
+    }
+
+    /**
+     * Cumulative, normalized weights of a Zipf distribution with exponent 1.
+     */
+    private static double[] zipf(int size) {
+        double[] weights = new double[size];
+        double total = 0;
+
+        for (int rank = 0; rank < size; rank++) {
+            total += 1.0 / (rank + 1);
+            weights[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            weights[rank] /= total;
+        }
+        return weights;
+    }
+}
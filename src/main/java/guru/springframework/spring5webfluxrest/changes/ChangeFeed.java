@@ -0,0 +1,178 @@
+package guru.springframework.spring5webfluxrest.changes;
+
+import guru.springframework.spring5webfluxrest.domain.ChangeEvent;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-process feed of the writes to one collection, with a bounded replay buffer.
+ * <p>
+ * Every event gets the next sequence number, and its token is that number prefixed
+ * with an epoch identifying this feed instance, so a token from before a restart is
+ * recognised rather than misread. The last {@code replaySize} events are kept, and a
+ * subscriber resuming from a token still in that window first receives what it missed,
+ * then live events, with no gap or duplicate between the two. Any other token gets a
+ * {@code RESET} event instead.
+ * <p>
+ * Each subscriber has its own buffer of {@code bufferSize} events and is served on a
+ * worker thread, so a slow one never delays the writer or the other subscribers; when
+ * its buffer is full its oldest events are dropped (and counted).
+ */
+public class ChangeFeed<T> {
+
+    private static final char SEPARATOR = '-';
+
+    private static final int PREFETCH = 16;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final int replaySize;
+
+    private final int bufferSize;
+
+    private final ArrayDeque<ChangeEvent<T>> replay;
+
+    private final Set<FluxSink<ChangeEvent<T>>> subscribers = new LinkedHashSet<>();
+
+    private final List<Consumer<ChangeEvent<T>>> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private long sequence;
+
+    public ChangeFeed(int replaySize, int bufferSize) {
+        this.replaySize = replaySize;
+        this.bufferSize = bufferSize;
+        this.replay = new ArrayDeque<>(replaySize);
+    }
+
+    public void inserted(String id, T document) {
+        publish(ChangeEvent.Type.INSERT, id, document);
+    }
+
+    public void updated(String id, T document) {
+        publish(ChangeEvent.Type.UPDATE, id, document);
+    }
+
+    public void deleted(String id) {
+        publish(ChangeEvent.Type.DELETE, id, null);
+    }
+
+    public void reset() {
+        publish(ChangeEvent.Type.RESET, null, null);
+    }
+
+    public synchronized void publish(ChangeEvent.Type type, String id, T document) {
+        ChangeEvent<T> event = new ChangeEvent<>(token(++sequence), type, id, document);
+
+        if (replay.size() == replaySize) {
+            replay.removeFirst();
+        }
+        replay.addLast(event);
+
+        // Each sink only queues the event; its subscriber drains it on a worker
+        subscribers.forEach(subscriber -> subscriber.next(event));
+        listeners.forEach(listener -> listener.accept(event));
+    }
+
+    /**
+     * Registers an in-process listener, called with every event on the writer's thread,
+     * in order, before the write is acknowledged. It must be quick and must not block.
+     */
+    public void addListener(Consumer<ChangeEvent<T>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Streams the events published from now on, preceded by those after {@code after}.
+     *
+     * @param after the token of the last event the client saw, or null to start live
+     */
+    public Flux<ChangeEvent<T>> subscribe(String after) {
+        return Flux.<ChangeEvent<T>>create(sink -> {
+            synchronized (this) {
+                missedSince(after).forEach(sink::next);
+                subscribers.add(sink);
+            }
+            sink.onDispose(() -> unsubscribe(sink));
+        }, FluxSink.OverflowStrategy.IGNORE)
+                .onBackpressureBuffer(bufferSize, event -> dropped.incrementAndGet(), BufferOverflowStrategy.DROP_OLDEST)
+                .publishOn(Schedulers.parallel(), PREFETCH);
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public synchronized long getPublished() {
+        return sequence;
+    }
+
+    /**
+     * @return the number of events dropped from the buffers of slow subscribers
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private synchronized void unsubscribe(FluxSink<ChangeEvent<T>> sink) {
+        subscribers.remove(sink);
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private List<ChangeEvent<T>> missedSince(String after) {
+        if (after == null) {
+            return Collections.emptyList();
+        }
+
+        long seen = sequenceOf(after);
+        long oldest = sequence - replay.size() + 1;
+
+        if (seen < oldest - 1 || seen > sequence) {
+            return Collections.singletonList(new ChangeEvent<>(token(sequence), ChangeEvent.Type.RESET, null, null));
+        }
+
+        List<ChangeEvent<T>> missed = new ArrayList<>((int) (sequence - seen));
+        long position = oldest;
+        for (ChangeEvent<T> event : replay) {
+            if (position++ > seen) {
+                missed.add(event);
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * @return the sequence number of the token, or -1 if it is not one of this feed's
+     */
+    private long sequenceOf(String token) {
+        int separator = token.lastIndexOf(SEPARATOR);
+
+        if (separator < 0 || !epoch.equals(token.substring(0, separator))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String token(long sequence) {
+        return epoch + SEPARATOR + sequence;
+    }
+}
@@ -0,0 +1,49 @@
+package guru.springframework.spring5webfluxrest.changes;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+/**
+ * The vendor and category change feeds, with their metrics.
+ * <p>
+ * Publishes an {@code api.changes.subscribers} gauge and {@code api.changes.published}
+ * and {@code api.changes.dropped} counters, each tagged with the feed
+ * ({@code vendors} or {@code categories}).
+ */
+@Component
+public class ChangeFeeds {
+
+    @Getter
+    private final ChangeFeed<Vendor> vendors;
+
+    @Getter
+    private final ChangeFeed<Category> categories;
+
+    public ChangeFeeds(ApiProperties apiProperties, MeterRegistry meterRegistry) {
+        ApiProperties.Changes properties = apiProperties.getChanges();
+
+        vendors = new ChangeFeed<>(properties.getReplaySize(), properties.getSubscriberBufferSize());
+        categories = new ChangeFeed<>(properties.getReplaySize(), properties.getSubscriberBufferSize());
+        register(meterRegistry, "vendors", vendors);
+        register(meterRegistry, "categories", categories);
+    }
+
+    private static void register(MeterRegistry meterRegistry, String feed, ChangeFeed<?> changeFeed) {
+        Gauge.builder("api.changes.subscribers", changeFeed, ChangeFeed::getSubscriberCount)
+                .tag("feed", feed)
+                .register(meterRegistry);
+        FunctionCounter.builder("api.changes.published", changeFeed, ChangeFeed::getPublished)
+                .tag("feed", feed)
+                .register(meterRegistry);
+        FunctionCounter.builder("api.changes.dropped", changeFeed, ChangeFeed::getDropped)
+                .tag("feed", feed)
+                .description("Events dropped from the buffers of slow subscribers")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,152 @@
+package guru.springframework.spring5webfluxrest.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes documents as gzip-compressed newline-delimited JSON, one chunk at a time.
+ * <p>
+ * Each document is serialized straight into the compressor, which writes into a
+ * buffer from the given factory (pooled, for Netty), so no document is held as bytes
+ * of its own. Every chunk ends with a sync flush of the compressor: the bytes written
+ * so far decompress completely, and a client that is cut off keeps every document it
+ * received. One gzip member spans the whole stream, so the compression context carries
+ * over from chunk to chunk.
+ * <p>
+ * Chunks are written one after another; the methods only synchronize so that
+ * {@link #close()} on a cancelled response cannot free the compressor mid-write.
+ */
+public class GzipNdjsonWriter implements Closeable {
+
+    private final DataBufferFactory bufferFactory;
+
+    private final int bufferSize;
+
+    private final ObjectWriter writer;
+
+    private final Target target = new Target();
+
+    private final GZIPOutputStream gzip;
+
+    private final JsonGenerator generator;
+
+    public GzipNdjsonWriter(ObjectMapper objectMapper, DataBufferFactory bufferFactory, int level, int bufferSize) {
+        this.bufferFactory = bufferFactory;
+        this.bufferSize = bufferSize;
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try {
+            // The gzip header goes to the first chunk
+            target.buffer = bufferFactory.allocateBuffer(bufferSize);
+            this.gzip = new LeveledGzipOutputStream(target, bufferSize, level);
+
+            // Flushing the generator must only hand its bytes to the compressor, not flush it
+            this.generator = objectMapper.getFactory().createGenerator(gzip)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+                    .setRootValueSeparator(null);
+        } catch (IOException e) {
+            DataBufferUtils.release(target.buffer);
+            throw new EncodingException("Could not start gzip stream", e);
+        }
+    }
+
+    /**
+     * @return the compressed lines of the documents, complete up to their last byte
+     */
+    public synchronized DataBuffer write(List<?> documents) {
+        try {
+            if (target.buffer == null) {
+                target.buffer = bufferFactory.allocateBuffer(bufferSize);
+            }
+            for (Object document : documents) {
+                writer.writeValue(generator, document);
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+            gzip.flush();
+            return target.take();
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(target.take());
+            throw new EncodingException("Could not write export chunk", e);
+        }
+    }
+
+    /**
+     * @return the rest of the stream, ending with the gzip trailer
+     */
+    public synchronized DataBuffer finish() {
+        try {
+            if (target.buffer == null) {
+                target.buffer = bufferFactory.allocateBuffer(bufferSize);
+            }
+            generator.flush();
+            gzip.finish();
+            return target.take();
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(target.take());
+            throw new EncodingException("Could not finish export", e);
+        }
+    }
+
+    /**
+     * Frees the compressor; anything not yet taken as a chunk is discarded.
+     */
+    @Override
+    public synchronized void close() {
+        DataBufferUtils.release(target.take());
+        try {
+            gzip.close();
+        } catch (IOException e) {
+            // Nothing is written anywhere by now
+        }
+    }
+
+    /**
+     * The sink of the compressor: the current chunk's buffer, or nowhere between chunks.
+     */
+    private static final class Target extends OutputStream {
+
+        private DataBuffer buffer;
+
+        private DataBuffer take() {
+            DataBuffer taken = buffer;
+            buffer = null;
+            return taken;
+        }
+
+        @Override
+        public void write(int b) {
+            if (buffer != null) {
+                buffer.write((byte) b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (buffer != null) {
+                buffer.write(bytes, offset, length);
+            }
+        }
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        private LeveledGzipOutputStream(OutputStream out, int size, int level) throws IOException {
+            super(out, size, true);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package guru.springframework.spring5webfluxrest.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.MimeType;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes values of a binary Jackson data format that has no non-blocking parser, such
+ * as CBOR. The whole body is buffered before parsing starts, so unlike JSON or Smile a
+ * streamed request is not decoded incrementally; a body larger than {@code
+ * maxBufferedBytes} is refused with 413 rather than held in memory. A body holding an
+ * array decodes to its elements, as does a body of consecutive top-level values.
+ */
+public class JacksonBinaryDecoder implements Decoder<Object> {
+
+    private final ObjectMapper objectMapper;
+
+    private final int maxBufferedBytes;
+
+    private final List<MimeType> mimeTypes;
+
+    public JacksonBinaryDecoder(ObjectMapper objectMapper, int maxBufferedBytes, MimeType... mimeTypes) {
+        this.objectMapper = objectMapper;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.mimeTypes = Arrays.asList(mimeTypes);
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return mimeType != null
+                && mimeTypes.stream().anyMatch(supported -> supported.isCompatibleWith(mimeType))
+                && objectMapper.canDeserialize(javaType(elementType));
+    }
+
+    @Override
+    public Flux<Object> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                               MimeType mimeType, Map<String, Object> hints) {
+        ObjectReader reader = objectMapper.readerFor(javaType(elementType));
+
+        return join(inputStream, mimeType)
+                .flatMapMany(buffer -> {
+                    try {
+                        MappingIterator<Object> values = reader.readValues(bytes(buffer));
+                        return Flux.fromIterable(() -> values);
+                    } catch (IOException e) {
+                        return Flux.error(e);
+                    }
+                })
+                .onErrorMap(e -> !(e instanceof DecodingException || e instanceof ResponseStatusException),
+                        e -> new DecodingException("Could not read " + mimeType, e));
+    }
+
+    @Override
+    public Mono<Object> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                     MimeType mimeType, Map<String, Object> hints) {
+        ObjectReader reader = objectMapper.readerFor(javaType(elementType));
+
+        return join(inputStream, mimeType)
+                .map(buffer -> {
+                    try {
+                        return reader.readValue(bytes(buffer));
+                    } catch (IOException e) {
+                        throw new DecodingException("Could not read " + mimeType, e);
+                    }
+                });
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return mimeTypes;
+    }
+
+    /**
+     * Like {@link DataBufferUtils#join}, but fails as soon as the body outgrows the
+     * limit, releasing what was read.
+     */
+    private Mono<DataBuffer> join(Publisher<DataBuffer> inputStream, MimeType mimeType) {
+        return Mono.defer(() -> {
+            List<DataBuffer> buffers = new ArrayList<>();
+            AtomicLong size = new AtomicLong();
+
+            return Flux.from(inputStream)
+                    .doOnNext(buffer -> {
+                        buffers.add(buffer);
+                        if (size.addAndGet(buffer.readableByteCount()) > maxBufferedBytes) {
+                            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, String.format(
+                                    "%s bodies are limited to %d bytes", mimeType, maxBufferedBytes));
+                        }
+                    })
+                    .then(Mono.fromSupplier(() -> buffers.isEmpty() ? null : buffers.get(0).factory().join(buffers)))
+                    .doOnError(e -> buffers.forEach(DataBufferUtils::release))
+                    .doOnCancel(() -> buffers.forEach(DataBufferUtils::release));
+        });
+    }
+
+    private JavaType javaType(ResolvableType type) {
+        return objectMapper.constructType(type.getType());
+    }
+
+    private static byte[] bytes(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package guru.springframework.spring5webfluxrest.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes values with a binary Jackson data format such as CBOR or Smile.
+ * <p>
+ * A single value is written as one document. A stream of values is written as one
+ * array, element by element, so it needs no separator (binary formats have none) and
+ * decodes as a plain list; for the streaming media types each element is flushed as
+ * soon as it is written.
+ */
+public class JacksonBinaryEncoder implements HttpMessageEncoder<Object> {
+
+    private final ObjectMapper objectMapper;
+
+    private final List<MimeType> mimeTypes;
+
+    private final List<MediaType> streamingMediaTypes;
+
+    public JacksonBinaryEncoder(ObjectMapper objectMapper, List<MediaType> streamingMediaTypes,
+                                MimeType... mimeTypes) {
+        this.objectMapper = objectMapper;
+        this.mimeTypes = Arrays.asList(mimeTypes);
+        this.streamingMediaTypes = streamingMediaTypes;
+    }
+
+    /**
+     * Only claims explicitly requested media types. Answering false for a null media
+     * type also registers this as a typed rather than a catch-all writer, so it is
+     * consulted before the default Jackson writers.
+     */
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return mimeType != null
+                && mimeTypes.stream().anyMatch(supported -> supported.isCompatibleWith(mimeType))
+                && objectMapper.canSerialize(elementType.resolve(Object.class));
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        ObjectWriter writer = objectMapper.writerFor(objectMapper.constructType(elementType.getType()));
+
+        if (inputStream instanceof Mono) {
+            return Mono.from(inputStream)
+                    .map(value -> {
+                        try {
+                            return bufferFactory.wrap(writer.writeValueAsBytes(value));
+                        } catch (IOException e) {
+                            throw new EncodingException("Could not write " + mimeType, e);
+                        }
+                    })
+                    .flux();
+        }
+
+        return Flux.defer(() -> {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            SequenceWriter array = writeArray(writer, output, mimeType);
+
+            return Flux.from(inputStream)
+                    .map(value -> {
+                        try {
+                            array.write(value);
+                            array.flush();
+                        } catch (IOException e) {
+                            throw new EncodingException("Could not write " + mimeType, e);
+                        }
+                        return drain(output, bufferFactory);
+                    })
+                    .concatWith(Mono.fromCallable(() -> {
+                        array.close();
+                        return drain(output, bufferFactory);
+                    }));
+        });
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return mimeTypes;
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return streamingMediaTypes;
+    }
+
+    private static SequenceWriter writeArray(ObjectWriter writer, ByteArrayOutputStream output, MimeType mimeType) {
+        try {
+            return writer.writeValuesAsArray(output);
+        } catch (IOException e) {
+            throw new EncodingException("Could not write " + mimeType, e);
+        }
+    }
+
+    private static DataBuffer drain(ByteArrayOutputStream output, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.wrap(output.toByteArray());
+        output.reset();
+        return buffer;
+    }
+}
@@ -0,0 +1,459 @@
+package guru.springframework.spring5webfluxrest.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tunables for the REST API, bound from {@code api.*} properties.
+ */
+@Data
+@ConfigurationProperties("api")
+public class ApiProperties {
+
+    private final Ingest ingest = new Ingest();
+
+    private final Paging paging = new Paging();
+
+    private final MultiGet multiGet = new MultiGet();
+
+    private final Bulk bulk = new Bulk();
+
+    private final Export export = new Export();
+
+    private final Expand expand = new Expand();
+
+    private final Cache cache = new Cache();
+
+    private final Coalescing coalescing = new Coalescing();
+
+    private final WriteBehind writeBehind = new WriteBehind();
+
+    private final Synthetic synthetic = new Synthetic();
+
+    private final Limiter limiter = new Limiter();
+
+    private final Changes changes = new Changes();
+
+    private final Blocking blocking = new Blocking();
+
+    private final CategorySnapshot categorySnapshot = new CategorySnapshot();
+
+    private final Resilience resilience = new Resilience();
+
+    private final InMemory inMemory = new InMemory();
+
+    @Data
+    public static class Ingest {
+
+        /**
+         * Number of documents sent to the datastore in a single bulk insert.
+         */
+        private int batchSize = 1000;
+
+        /**
+         * Maximum number of bulk inserts in flight per request. Once reached, no more
+         * of the request body is read until a batch completes.
+         */
+        private int maxInFlightBatches = 4;
+
+        /**
+         * Largest request body, in bytes, of a format that is buffered whole before it is
+         * decoded (CBOR). Larger bodies are refused with 413.
+         */
+        private int maxBufferedBytes = 16 * 1024 * 1024;
+    }
+
+    @Data
+    public static class Paging {
+
+        /**
+         * Upper bound on the {@code limit} of a single page; larger requests are clamped.
+         */
+        private int maxLimit = 1000;
+
+        /**
+         * Number of documents fetched per cursor round trip when streaming a collection.
+         */
+        private int cursorBatchSize = 500;
+    }
+
+    @Data
+    public static class MultiGet {
+
+        /**
+         * Maximum number of ids accepted by a single multi-get request.
+         */
+        private int maxIds = 500;
+    }
+
+    @Data
+    public static class Bulk {
+
+        /**
+         * Number of operations sent to the datastore in one bulk write.
+         */
+        private int chunkSize = 500;
+
+        /**
+         * Maximum number of bulk writes in flight per request.
+         */
+        private int maxInFlightChunks = 2;
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * Number of documents compressed and flushed to the client as one chunk.
+         */
+        private int flushDocuments = 1000;
+
+        /**
+         * Initial capacity in bytes of the buffer each chunk is compressed into.
+         */
+        private int bufferSize = 64 * 1024;
+
+        /**
+         * Deflate level, from 1 (fastest) to 9 (smallest). Low levels keep an export
+         * bound by the network rather than the CPU.
+         */
+        private int compressionLevel = 1;
+
+        /**
+         * Exports running at once, whether or not the adaptive limiter is enabled. An
+         * export lasts as long as the dump takes, so it does not take part in the
+         * adaptive read limit; beyond this, exports are rejected like requests the
+         * limiter sheds.
+         */
+        private int maxConcurrent = 2;
+    }
+
+    @Data
+    public static class Expand {
+
+        /**
+         * Number of streamed documents whose references are resolved with one lookup.
+         */
+        private int windowSize = 500;
+
+        /**
+         * Maximum number of windows being resolved at once, per request.
+         */
+        private int maxInFlightWindows = 2;
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Whether {@code findById} reads go through an in-process cache.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of documents cached per repository.
+         */
+        private long maximumSize = 10_000;
+
+        /**
+         * How long a cached document is served before it is read again.
+         */
+        private Duration timeToLive = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Coalescing {
+
+        /**
+         * Whether concurrent {@code findById} calls for the same id share one query.
+         */
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * Whether unconditional replaces and patches are merged per document and
+         * flushed in bulk.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long writes are collected before they are flushed.
+         */
+        private Duration window = Duration.ofMillis(20);
+
+        /**
+         * Number of pending documents at which a flush starts without waiting for the window.
+         */
+        private int maxBatchSize = 500;
+
+        /**
+         * How long shutdown waits for pending writes to be flushed.
+         */
+        private Duration drainTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Synthetic {
+
+        /**
+         * Number of vendors the collection is topped up to with generated data at
+         * startup; 0 disables generation.
+         */
+        private long vendors = 0;
+
+        /**
+         * Number of categories the collection is topped up to with generated data at
+         * startup; 0 disables generation.
+         */
+        private long categories = 0;
+
+        /**
+         * Seed for the generator, so every run produces the same names.
+         */
+        private long seed = 42;
+
+        /**
+         * Number of generated documents sent to the datastore in a single bulk insert.
+         */
+        private int batchSize = 5000;
+
+        /**
+         * Maximum number of bulk inserts in flight per collection.
+         */
+        private int concurrency = 4;
+    }
+
+    @Data
+    public static class Limiter {
+
+        /**
+         * Whether requests beyond the adaptive concurrency limit are shed.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Budget for reads: GET and HEAD requests, and multi-gets.
+         */
+        private final Budget reads = new Budget(200, 20, 2000);
+
+        /**
+         * Budget for every other request.
+         */
+        private final Budget writes = new Budget(50, 5, 500);
+
+        /**
+         * How far the recent datastore latency may rise above its long-term baseline
+         * before the limit shrinks; 2.0 tolerates a doubling.
+         */
+        private double tolerance = 2.0;
+
+        /**
+         * Weight of each new estimate in the limit, between 0 and 1.
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * Status of a shed request: 503 (the service is overloaded) or 429.
+         */
+        private int rejectStatus = 503;
+
+        /**
+         * Value of the Retry-After header sent with a shed request.
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Changes {
+
+        /**
+         * Number of recent events kept per feed for reconnecting clients to catch up from.
+         */
+        private int replaySize = 1000;
+
+        /**
+         * Number of events buffered per subscriber before its oldest ones are dropped.
+         */
+        private int subscriberBufferSize = 256;
+
+        /**
+         * Interval of the comments sent on an idle event stream to keep it open.
+         */
+        private Duration heartbeat = Duration.ofSeconds(15);
+    }
+
+    @Data
+    public static class Blocking {
+
+        /**
+         * Whether blocking calls on event loop and Reactor worker threads are detected.
+         */
+        private boolean detect = false;
+
+        /**
+         * Whether a detected blocking call fails, rather than being logged and counted.
+         */
+        private boolean fail = false;
+
+        /**
+         * Maximum number of threads of the scheduler for blocking work.
+         */
+        private int maxThreads = 16;
+
+        /**
+         * Maximum number of tasks waiting for a thread of that scheduler.
+         */
+        private int queueCapacity = 1000;
+    }
+
+    @Data
+    public static class CategorySnapshot {
+
+        /**
+         * Whether plain category reads are answered from an in-memory copy of the collection.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Interval at which that copy is reloaded from the datastore, to pick up writes
+         * made by other instances or outside the API.
+         */
+        private Duration reconcileInterval = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Resilience {
+
+        /**
+         * Whether repository calls get deadlines and a circuit breaker.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Deadline of a read; for a stream, of its first and each following document.
+         */
+        private Duration readDeadline = Duration.ofSeconds(2);
+
+        /**
+         * Deadline of a write.
+         */
+        private Duration writeDeadline = Duration.ofSeconds(5);
+
+        /**
+         * Deadlines of single operations, keyed by repository method with or without
+         * the repository, e.g. {@code api.resilience.deadlines[VendorRepository.findById]=300ms}
+         * or {@code api.resilience.deadlines[searchByText]=1s}.
+         */
+        private Map<String, Duration> deadlines = new HashMap<>();
+
+        private final Hedge hedge = new Hedge();
+
+        private final Breaker breaker = new Breaker();
+
+        /**
+         * @return the deadline of the operation, the most specific configured one first
+         */
+        public Duration deadlineFor(String repository, String method, boolean read) {
+            for (Map.Entry<String, Duration> deadline : deadlines.entrySet()) {
+                if (deadline.getKey().equalsIgnoreCase(repository + "." + method)) {
+                    return deadline.getValue();
+                }
+            }
+            for (Map.Entry<String, Duration> deadline : deadlines.entrySet()) {
+                if (deadline.getKey().equalsIgnoreCase(method)) {
+                    return deadline.getValue();
+                }
+            }
+            return read ? readDeadline : writeDeadline;
+        }
+    }
+
+    @Data
+    public static class Hedge {
+
+        /**
+         * Whether a {@code findById} still unanswered after {@code delay} is also sent to
+         * a secondary, taking whichever answers first. Secondaries may lag behind, so a
+         * document they do not have never wins over the primary.
+         */
+        private boolean enabled = false;
+
+        private Duration delay = Duration.ofMillis(50);
+    }
+
+    @Data
+    public static class Breaker {
+
+        /**
+         * Number of recent calls the failure rate is computed over.
+         */
+        private int windowSize = 50;
+
+        /**
+         * Number of calls needed in the window before the circuit can open.
+         */
+        private int minimumCalls = 20;
+
+        /**
+         * Fraction of failed calls (timeouts and connection failures) that opens the circuit.
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * How long calls fail fast before one trial call is let through again.
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class InMemory {
+
+        /**
+         * Latency added to every call of the in-memory repositories, to stand in for a
+         * remote datastore.
+         */
+        private Duration latency = Duration.ZERO;
+
+        /**
+         * Fraction of calls delayed by {@code slow-latency} instead, like a slow replica.
+         */
+        private double slowFraction = 0;
+
+        private Duration slowLatency = Duration.ZERO;
+
+        /**
+         * Fraction of calls that fail as if the datastore could not be reached.
+         */
+        private double failureFraction = 0;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Budget {
+
+        /**
+         * Concurrency limit before any latency has been observed.
+         */
+        private int initialLimit;
+
+        /**
+         * The limit never shrinks below this.
+         */
+        private int minLimit;
+
+        /**
+         * The limit never grows beyond this.
+         */
+        private int maxLimit;
+    }
+}
@@ -0,0 +1,37 @@
+package guru.springframework.spring5webfluxrest.config;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.connection.ConnectionPoolSettings;
+import guru.springframework.spring5webfluxrest.metrics.MongoCommandMetrics;
+import guru.springframework.spring5webfluxrest.metrics.MongoConnectionPoolMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+@Profile("!inmemory")
+public class MetricsConfig {
+
+    /**
+     * Registers command and connection pool listeners on the reactive Mongo client.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoMetricsCustomizer(MeterRegistry meterRegistry,
+                                                                      MongoProperties mongoProperties) {
+        return builder -> {
+            // Replacing the pool settings would drop any options given in a connection URI
+            ConnectionPoolSettings.Builder pool = ConnectionPoolSettings.builder();
+            if (mongoProperties.getUri() != null) {
+                pool.applyConnectionString(new ConnectionString(mongoProperties.getUri()));
+            }
+
+            builder.addCommandListener(new MongoCommandMetrics(meterRegistry))
+                    .connectionPoolSettings(pool
+                            .addConnectionPoolListener(new MongoConnectionPoolMetrics(meterRegistry))
+                            .build());
+        };
+    }
+}
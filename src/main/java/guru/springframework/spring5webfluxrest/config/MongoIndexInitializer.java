@@ -0,0 +1,42 @@
+package guru.springframework.spring5webfluxrest.config;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Creates the indexes declared on {@code @Document} classes when the application starts.
+ * <p>
+ * The blocking template does this on its own, but the reactive one does not, so the
+ * annotations would otherwise be ignored. Creation is idempotent, and blocks startup
+ * so no query runs before its index exists.
+ */
+@Component
+@Profile("!inmemory")
+@AllArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final MongoMappingContext mappingContext;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void ensureIndexes() {
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        Flux.fromIterable(mappingContext.getPersistentEntities())
+                .filter(entity -> entity.findAnnotation(Document.class) != null)
+                .flatMapIterable(entity -> resolver.resolveIndexFor(entity.getTypeInformation()))
+                .concatMap(index -> mongoOperations.indexOps(index.getCollection()).ensureIndex(index)
+                        .doOnNext(name -> log.info(String.format("Ensured index %s on %s", name, index.getCollection()))))
+                .blockLast();
+    }
+}
@@ -0,0 +1,29 @@
+package guru.springframework.spring5webfluxrest.config;
+
+import com.mongodb.ReadPreference;
+import guru.springframework.spring5webfluxrest.repositories.support.SecondaryReads;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+@Configuration
+@Profile("!inmemory")
+@ConditionalOnProperty(name = "api.resilience.hedge.enabled", havingValue = "true")
+public class MongoSecondaryReadsConfig {
+
+    /**
+     * Hedged reads go through a template of their own, on the same connections and
+     * mapping as the repositories' but preferring a secondary. Against a standalone
+     * server it reads from the primary, so a hedge is a plain retry.
+     */
+    @Bean
+    public SecondaryReads secondaryReads(ReactiveMongoDatabaseFactory databaseFactory, MongoConverter converter) {
+        ReactiveMongoTemplate secondary = new ReactiveMongoTemplate(databaseFactory, converter);
+        secondary.setReadPreference(ReadPreference.secondaryPreferred());
+        return secondary::findById;
+    }
+}
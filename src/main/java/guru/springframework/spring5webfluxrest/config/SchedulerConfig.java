@@ -0,0 +1,54 @@
+package guru.springframework.spring5webfluxrest.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class SchedulerConfig {
+
+    /**
+     * The scheduler for work that has to block, e.g.
+     * {@code Mono.fromCallable(...).subscribeOn(blockingScheduler)}, so it never runs on
+     * an event loop. Nothing in the request path blocks today, and startup work blocks
+     * on the main thread, which may; this is where any blocking call that request
+     * handling comes to need belongs.
+     * <p>
+     * Both its threads and its queue are bounded: work beyond them fails at once with a
+     * {@link java.util.concurrent.RejectedExecutionException} rather than piling up.
+     * Its threads are named {@code blocking-N}, which blocking call detection allows.
+     * Published as {@code executor.*} meters named {@code blocking}.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler blockingScheduler(ApiProperties apiProperties, MeterRegistry meterRegistry) {
+        ApiProperties.Blocking blocking = apiProperties.getBlocking();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(blocking.getMaxThreads(), blocking.getMaxThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(blocking.getQueueCapacity()), threadFactory("blocking-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        ExecutorService monitored = ExecutorServiceMetrics.monitor(meterRegistry, executor, "blocking");
+        return Schedulers.fromExecutorService(monitored);
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package guru.springframework.spring5webfluxrest.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import guru.springframework.spring5webfluxrest.codec.JacksonBinaryDecoder;
+import guru.springframework.spring5webfluxrest.codec.JacksonBinaryEncoder;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Collections;
+
+@Configuration
+public class WebFluxConfig {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+
+    public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+
+    public static final MediaType APPLICATION_CBOR = MediaType.valueOf(APPLICATION_CBOR_VALUE);
+
+    public static final String APPLICATION_STREAM_CBOR_VALUE = "application/stream+cbor";
+
+    public static final MediaType APPLICATION_STREAM_CBOR = MediaType.valueOf(APPLICATION_STREAM_CBOR_VALUE);
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    public static final String APPLICATION_STREAM_SMILE_VALUE = "application/stream+x-jackson-smile";
+
+    public static final MediaType APPLICATION_STREAM_SMILE = MediaType.valueOf(APPLICATION_STREAM_SMILE_VALUE);
+
+    /**
+     * Newline delimited JSON is not one of the default Jackson media types, but the
+     * Jackson codecs already handle a stream of top-level objects incrementally,
+     * exactly as they do for {@code application/stream+json}.
+     */
+    @Bean
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> {
+            Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, APPLICATION_NDJSON);
+            encoder.setStreamingMediaTypes(Collections.singletonList(APPLICATION_NDJSON));
+
+            configurer.customCodecs().decoder(new Jackson2JsonDecoder(objectMapper, APPLICATION_NDJSON));
+            configurer.customCodecs().encoder(encoder);
+        };
+    }
+
+    /**
+     * Binary alternatives to JSON for service-to-service callers, negotiated through
+     * Accept and Content-Type like JSON. The mappers share the application's Jackson
+     * configuration. Smile is decoded incrementally by Spring's non-blocking decoder;
+     * CBOR has no non-blocking parser, so CBOR request bodies are buffered whole, up to
+     * {@code api.ingest.max-buffered-bytes}.
+     */
+    @Bean
+    public CodecCustomizer binaryCodecCustomizer(Jackson2ObjectMapperBuilder objectMapperBuilder,
+                                                 ApiProperties apiProperties) {
+        ObjectMapper smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+        ObjectMapper cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+
+        return configurer -> {
+            configurer.customCodecs().encoder(new JacksonBinaryEncoder(smileMapper,
+                    Collections.singletonList(APPLICATION_STREAM_SMILE), APPLICATION_SMILE, APPLICATION_STREAM_SMILE));
+            configurer.customCodecs().decoder(new Jackson2SmileDecoder(smileMapper,
+                    APPLICATION_SMILE, APPLICATION_STREAM_SMILE));
+
+            configurer.customCodecs().encoder(new JacksonBinaryEncoder(cborMapper,
+                    Collections.singletonList(APPLICATION_STREAM_CBOR), APPLICATION_CBOR, APPLICATION_STREAM_CBOR));
+            configurer.customCodecs().decoder(new JacksonBinaryDecoder(cborMapper,
+                    apiProperties.getIngest().getMaxBufferedBytes(), APPLICATION_CBOR, APPLICATION_STREAM_CBOR));
+        };
+    }
+}
@@ -1,69 +1,240 @@
 package guru.springframework.spring5webfluxrest.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring5webfluxrest.changes.ChangeFeeds;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.config.WebFluxConfig;
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
 import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.ChangeEvent;
+import guru.springframework.spring5webfluxrest.domain.CursorPage;
+import guru.springframework.spring5webfluxrest.domain.MultiGetItem;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.exceptions.PreconditionFailedException;
+import guru.springframework.spring5webfluxrest.exceptions.ResourceNotFoundException;
 import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
+import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
 import lombok.AllArgsConstructor;
 import org.reactivestreams.Publisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 @RestController
 @RequestMapping("/api/v1/categories")
 @AllArgsConstructor
 public class CategoryController {
 
     private final CategoryRepository categoryRepository;
+    private final VendorRepository vendorRepository;
+    private final ApiProperties apiProperties;
+    private final ChangeFeeds changeFeeds;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * The whole collection at once has no cursor to resume from; {@code after} only
+     * applies to pages and streams, so it is refused rather than ignored.
+     */
     @GetMapping
-    public Flux<Category> getCategories() {
-        return categoryRepository.findAll();
+    public Mono<ResponseEntity<List<Category>>> getCategories(
+            @RequestParam(value = "after", required = false) String after) {
+        if (after != null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "after needs limit, or a streaming media type"));
+        }
+
+        return categoryRepository.findAll()
+                .collectList()
+                .map(categories -> ETags.ok(ETags.ofAll(categories, Category::getId, Category::getVersion), categories));
+    }
+
+    @GetMapping(params = {"fields", "!limit"})
+    public Flux<Map<String, Object>> getCategoryFields(@RequestParam("fields") List<String> fields) {
+        return Flux.defer(() -> categoryRepository.findAllProjected(FieldSets.of(fields, Category.class)));
+    }
+
+    /**
+     * Pages are not projected, so rather than silently return whole documents the
+     * combination is refused.
+     */
+    @GetMapping(params = {"fields", "limit"})
+    public Flux<Map<String, Object>> getCategoryFieldsPage() {
+        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "fields cannot be combined with limit"));
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<CursorPage<Category>> getCategoryPage(@RequestParam("limit") int limit,
+                                                      @RequestParam(value = "after", required = false) String after) {
+        int pageSize = Math.min(Math.max(limit, 1), apiProperties.getPaging().getMaxLimit());
+
+        // Read one extra document to learn whether another page follows
+        return categoryRepository.findPage(after, pageSize + 1)
+                .collectList()
+                .map(categories -> {
+                    if (categories.size() <= pageSize) {
+                        return new CursorPage<>(categories, null);
+                    }
+                    List<Category> items = categories.subList(0, pageSize);
+                    return new CursorPage<>(items, items.get(pageSize - 1).getId());
+                });
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_STREAM_JSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE,
+            WebFluxConfig.APPLICATION_NDJSON_VALUE, WebFluxConfig.APPLICATION_STREAM_SMILE_VALUE,
+            WebFluxConfig.APPLICATION_STREAM_CBOR_VALUE})
+    public Flux<Category> streamCategories(@RequestParam(value = "after", required = false) String after) {
+        return categoryRepository.stream(after, apiProperties.getPaging().getCursorBatchSize());
+    }
+
+    @GetMapping("/_export")
+    public Mono<Void> exportCategories(@RequestParam(value = "after", required = false) String after,
+                                       ServerHttpResponse response) {
+        return Exports.gzipNdjson(response,
+                categoryRepository.stream(after, apiProperties.getPaging().getCursorBatchSize()),
+                "categories", objectMapper, apiProperties.getExport());
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChangeEvent<Category>>> categoryChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(value = "after", required = false) String after) {
+
+        // An EventSource resumes through the header; other clients may pass the token explicitly
+        return ChangeStreams.events(changeFeeds.getCategories(), lastEventId != null ? lastEventId : after,
+                apiProperties.getChanges().getHeartbeat());
     }
 
     @GetMapping("/{id}")
-    public Mono<Category> getCategoryById(@PathVariable("id") String id) {
-        return categoryRepository.findById(id);
+    public Mono<ResponseEntity<Category>> getCategoryById(@PathVariable("id") String id) {
+        return categoryRepository.findById(id)
+                .map(category -> ETags.ok(ETags.of(category.getVersion()), category))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new ResourceNotFoundException("Category", id))));
+    }
+
+    @GetMapping("/{id}/vendors")
+    public Flux<Vendor> getCategoryVendors(@PathVariable("id") String id) {
+        // An empty answer is only ambiguous when the category has no vendors, so only then check it exists
+        return vendorRepository.findByCategoryId(id)
+                .switchIfEmpty(Flux.defer(() -> categoryRepository.existsById(id)
+                        .flatMapMany(exists -> exists
+                                ? Flux.<Vendor>empty()
+                                : Flux.<Vendor>error(new ResourceNotFoundException("Category", id)))));
+    }
+
+    @GetMapping(value = "/{id}", params = "fields")
+    public Mono<Map<String, Object>> getCategoryFieldsById(@PathVariable("id") String id,
+                                                           @RequestParam("fields") List<String> fields) {
+        return Mono.defer(() -> categoryRepository.findByIdProjected(id, FieldSets.of(fields, Category.class)))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new ResourceNotFoundException("Category", id))));
+    }
+
+    @PostMapping("/_mget")
+    public Flux<MultiGetItem<Category>> multiGetCategories(@RequestBody(required = false) List<String> ids) {
+        return Flux.defer(() -> {
+            Set<String> distinct = MultiGets.distinctIds(ids, apiProperties.getMultiGet().getMaxIds());
+
+            // One $in query for the distinct ids, then answer in the order they were asked for
+            return categoryRepository.findAllById(distinct)
+                    .collectMap(Category::getId)
+                    .flatMapMany(found -> Flux.fromIterable(ids)
+                            .map(id -> MultiGetItem.of(id, found.get(id))));
+        });
     }
 
     @PostMapping()
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<Void> createCategory(@RequestBody Publisher<Category> categoryPublisher) {
-        return categoryRepository.saveAll(categoryPublisher).then();
+        return categoryRepository.saveAll(categoryPublisher)
+                .doOnNext(saved -> changeFeeds.getCategories().inserted(saved.getId(), saved))
+                .then();
+    }
+
+    @PostMapping(consumes = {MediaType.APPLICATION_STREAM_JSON_VALUE, WebFluxConfig.APPLICATION_NDJSON_VALUE,
+            WebFluxConfig.APPLICATION_STREAM_SMILE_VALUE, WebFluxConfig.APPLICATION_STREAM_CBOR_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BulkInsertResult> ingestCategories(@RequestBody Flux<Category> categoryFlux) {
+
+        // The body is decoded one document at a time; flatMap's concurrency bounds the
+        // batches in flight, so reading stops (and TCP pushes back) while they complete
+        ApiProperties.Ingest ingest = apiProperties.getIngest();
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+
+            return categoryFlux
+                    .buffer(ingest.getBatchSize())
+                    .flatMap(categoryRepository::insertBatch, ingest.getMaxInFlightBatches())
+                    .reduce(BulkInsertResult.of(0, 0), BulkInsertResult::plus)
+                    .doOnNext(result -> result.setElapsedMillis(
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)))
+                    // Too many documents to describe one by one: subscribers reload instead
+                    .doOnNext(result -> {
+                        if (result.getInserted() > 0) {
+                            changeFeeds.getCategories().reset();
+                        }
+                    });
+        });
+    }
+
+    @PostMapping("/_bulk")
+    public Flux<BulkOperationResult> bulkCategories(@RequestBody Flux<BulkOperation<Category>> operations) {
+
+        // Chunks are answered in request order; flatMapSequential's concurrency bounds the
+        // bulk writes in flight, so reading the body stops while they complete
+        ApiProperties.Bulk bulk = apiProperties.getBulk();
+
+        return operations
+                .buffer(bulk.getChunkSize())
+                .flatMapSequential(categoryRepository::bulkWrite, bulk.getMaxInFlightChunks())
+                .doOnNext(result -> ChangeStreams.publish(changeFeeds.getCategories(), result));
     }
 
     @PutMapping("/{id}")
-    public Mono<Category> updateCategory(@PathVariable("id") String id,
-                                         @RequestBody Category category) {
-        category.setId(id);
-        return categoryRepository.save(category);
+    public Mono<ResponseEntity<Category>> updateCategory(@PathVariable("id") String id,
+                                                         @RequestBody Category category,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        // Without If-Match this is an upsert, as before; with it, a write conditional on the version
+        return Mono.defer(() -> categoryRepository.replace(id, category, ETags.expectedVersion(ifMatch, "Category", id)))
+                .onErrorMap(OptimisticLockingFailureException.class,
+                        e -> new PreconditionFailedException("Category", id))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new PreconditionFailedException("Category", id))))
+                .doOnNext(replaced -> changeFeeds.getCategories().updated(id, replaced))
+                .map(replaced -> ETags.ok(ETags.of(replaced.getVersion()), replaced));
     }
 
     @PatchMapping("/{id}")
-    public Mono<Category> patchCategory(@PathVariable("id") String id,
-                                        @RequestBody Category category) {
-
-        // findById returns Mono.empty() when Category with id not found
-        // On block(), empty Mono returns a null
-        Category cat = categoryRepository.findById(id).block();
-
-        if (cat != null) {
-            boolean changed = false;
-
-            if (category.getDescription() != null &&
-                    !cat.getDescription().equals(category.getDescription())) {
-                cat.setDescription(category.getDescription());
-                changed = true;
-            }
-
-            if (changed) {
-                return categoryRepository.save(cat);
-            } else {
-                return Mono.just(cat);
-            }
-        } else {
-            throw new RuntimeException(String.format("Category with id of <%s> not found", id));
-        }
+    public Mono<ResponseEntity<Category>> patchCategory(@PathVariable("id") String id,
+                                                        @RequestBody Category category,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        // patch returns Mono.empty() when Category with id not found
+        return Mono.defer(() -> categoryRepository.patch(id, category, ETags.expectedVersion(ifMatch, "Category", id)))
+                .onErrorMap(OptimisticLockingFailureException.class,
+                        e -> new PreconditionFailedException("Category", id))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new ResourceNotFoundException("Category", id))))
+                .doOnNext(patched -> changeFeeds.getCategories().updated(id, patched))
+                .map(patched -> ETags.ok(ETags.of(patched.getVersion()), patched));
     }
 
 }
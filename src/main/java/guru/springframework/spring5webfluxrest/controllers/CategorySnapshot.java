@@ -0,0 +1,259 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring5webfluxrest.changes.ChangeFeeds;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.ChangeEvent;
+import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * The whole category collection, held in memory with every response body it can serve
+ * already serialized, for {@link CategorySnapshotWebFilter}.
+ * <p>
+ * A snapshot is immutable and replaced as a whole (copy on write), so readers never
+ * lock or see a half-applied change. Writes made through {@link CategoryController}
+ * reach it synchronously through the category change feed, before the write is
+ * acknowledged, so a client reads its own writes. Changes the feed cannot describe
+ * (bulk writes, ingests), the initial load, and a periodic reconciliation with the
+ * datastore replace it with a fresh full read. A full read never overwrites a change
+ * applied while it was in flight: it is retried instead.
+ */
+@Component
+@ConditionalOnProperty(name = "api.category-snapshot.enabled", havingValue = "true")
+@Slf4j
+public class CategorySnapshot {
+
+    private static final int MAX_RELOAD_ATTEMPTS = 3;
+
+    private final CategoryRepository categoryRepository;
+    private final ChangeFeeds changeFeeds;
+    private final ObjectMapper objectMapper;
+    private final ApiProperties apiProperties;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+    private final DirectProcessor<Long> reloadRequests = DirectProcessor.create();
+
+    private final FluxSink<Long> reloads = reloadRequests.sink();
+
+    private Disposable reconciliation;
+
+    public CategorySnapshot(CategoryRepository categoryRepository, ChangeFeeds changeFeeds,
+                            ObjectMapper objectMapper, ApiProperties apiProperties) {
+        this.categoryRepository = categoryRepository;
+        this.changeFeeds = changeFeeds;
+        this.objectMapper = objectMapper;
+        this.apiProperties = apiProperties;
+    }
+
+    /**
+     * Starts once the data has been bootstrapped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        changeFeeds.getCategories().addListener(this::apply);
+
+        Duration interval = apiProperties.getCategorySnapshot().getReconcileInterval();
+
+        // Requests arriving during a reload collapse into one more reload
+        reconciliation = Flux.merge(reloadRequests, Flux.interval(Duration.ZERO, interval))
+                .onBackpressureLatest()
+                .concatMap(trigger -> reload()
+                        .onErrorResume(e -> {
+                            log.warn("Category snapshot reload failed", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reconciliation != null) {
+            reconciliation.dispose();
+        }
+    }
+
+    /**
+     * @return the current snapshot, or null until the first load completes
+     */
+    Snapshot current() {
+        return current.get();
+    }
+
+    /**
+     * Replaces the snapshot with a full read of the datastore.
+     */
+    Mono<Boolean> reload() {
+        return Mono.defer(() -> {
+            Snapshot start = current.get();
+
+            return categoryRepository.findAll()
+                    .collectList()
+                    .map(categories -> current.compareAndSet(start, snapshotOf(categories)));
+        })
+                .filter(Boolean::booleanValue)
+                .repeatWhenEmpty(MAX_RELOAD_ATTEMPTS, attempts -> attempts)
+                .doOnNext(installed -> log.debug(String.format("Category snapshot reloaded with %d categories",
+                        current.get().size())));
+    }
+
+    private void apply(ChangeEvent<Category> event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                if (event.getDocument() != null) {
+                    Category category = event.getDocument();
+                    edit(entries -> {
+                        // Writers publish after their write completes, so racing writes may
+                        // arrive out of order; an older document never replaces a newer one
+                        Entry existing = entries.get(category.getId());
+                        if (existing != null && !isNewer(category, existing.category)) {
+                            return false;
+                        }
+                        entries.put(category.getId(), entryOf(category));
+                        return true;
+                    });
+                    return;
+                }
+                break;
+
+            case DELETE:
+                edit(entries -> entries.remove(event.getId()) != null);
+                return;
+
+            default:
+        }
+        reloads.next(0L);
+    }
+
+    /**
+     * Documents without a version cannot be ordered, and are taken as newer.
+     */
+    private static boolean isNewer(Category category, Category than) {
+        return category.getVersion() == null || than.getVersion() == null
+                || category.getVersion() > than.getVersion();
+    }
+
+    /**
+     * @param change edits the entries, and tells whether it changed any
+     */
+    private void edit(Predicate<Map<String, Entry>> change) {
+        while (true) {
+            Snapshot before = current.get();
+
+            if (before == null) {
+                // Not loaded yet; make sure the load that follows includes the change
+                reloads.next(0L);
+                return;
+            }
+
+            Map<String, Entry> entries = new LinkedHashMap<>(before.entries);
+            if (!change.test(entries)) {
+                return;
+            }
+
+            if (current.compareAndSet(before, snapshotOf(entries))) {
+                return;
+            }
+        }
+    }
+
+    private Snapshot snapshotOf(Collection<Category> categories) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        categories.forEach(category -> entries.put(category.getId(), entryOf(category)));
+        return snapshotOf(entries);
+    }
+
+    private Snapshot snapshotOf(Map<String, Entry> entries) {
+        List<Category> categories = new ArrayList<>(entries.size());
+        entries.values().forEach(entry -> categories.add(entry.category));
+
+        Entry all = new Entry(serialize(categories),
+                ETags.ofAll(categories, Category::getId, Category::getVersion), null);
+        return new Snapshot(Collections.unmodifiableMap(entries), all);
+    }
+
+    private Entry entryOf(Category category) {
+        return new Entry(serialize(category), ETags.of(category.getVersion()), category);
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A serialized response body and its entity tag.
+     */
+    static final class Entry {
+
+        final byte[] json;
+
+        final String etag;
+
+        private final Category category;
+
+        private Entry(byte[] json, String etag, Category category) {
+            this.json = json;
+            this.etag = etag;
+            this.category = category;
+        }
+    }
+
+    static final class Snapshot {
+
+        private final Map<String, Entry> entries;
+
+        private final Entry all;
+
+        private Snapshot(Map<String, Entry> entries, Entry all) {
+            this.entries = entries;
+            this.all = all;
+        }
+
+        /**
+         * @return the body and tag of the category list
+         */
+        Entry all() {
+            return all;
+        }
+
+        /**
+         * @return the body and tag of the category, or null if it is not in the snapshot
+         */
+        Entry byId(String id) {
+            return entries.get(id);
+        }
+
+        int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers plain category reads, {@code GET /api/v1/categories} and
+ * {@code GET /api/v1/categories/{id}}, from the {@link CategorySnapshot}: the tag is
+ * compared with {@code If-None-Match} and the pre-serialized body written as is, with
+ * no datastore I/O and no encoding. Anything else, a category missing from the
+ * snapshot, and every read before the first load, goes on to the controller.
+ * <p>
+ * Ordered after the limiter and the request metrics filter, so these reads are still
+ * counted and timed.
+ */
+@Component
+@ConditionalOnProperty(name = "api.category-snapshot.enabled", havingValue = "true")
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@AllArgsConstructor
+public class CategorySnapshotWebFilter implements WebFilter {
+
+    private static final String CATEGORIES_PATH = "/api/v1/categories";
+
+    private final CategorySnapshot categorySnapshot;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        CategorySnapshot.Snapshot snapshot = categorySnapshot.current();
+        ServerHttpRequest request = exchange.getRequest();
+
+        if (snapshot == null || request.getMethod() != HttpMethod.GET
+                || !request.getQueryParams().isEmpty() || !acceptsJson(request)) {
+            return chain.filter(exchange);
+        }
+
+        CategorySnapshot.Entry entry = entryFor(snapshot, request.getPath().pathWithinApplication().value());
+        if (entry == null) {
+            return chain.filter(exchange);
+        }
+
+        if (exchange.checkNotModified(entry.etag)) {
+            return exchange.getResponse().setComplete();
+        }
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON_UTF8);
+        response.getHeaders().setContentLength(entry.json.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(entry.json)));
+    }
+
+    private static CategorySnapshot.Entry entryFor(CategorySnapshot.Snapshot snapshot, String path) {
+        if (!path.startsWith(CATEGORIES_PATH)) {
+            return null;
+        }
+
+        String rest = path.substring(CATEGORIES_PATH.length());
+        if (rest.isEmpty()) {
+            return snapshot.all();
+        }
+        if (rest.charAt(0) != '/' || rest.indexOf('/', 1) >= 0 || rest.length() == 1) {
+            return null;
+        }
+        return snapshot.byId(rest.substring(1));
+    }
+
+    /**
+     * Streaming and binary representations are left to the controller.
+     */
+    private static boolean acceptsJson(ServerHttpRequest request) {
+        List<MediaType> accept = new ArrayList<>(request.getHeaders().getAccept());
+        if (accept.isEmpty()) {
+            return true;
+        }
+
+        MediaType.sortBySpecificityAndQuality(accept);
+        return accept.get(0).isCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+}
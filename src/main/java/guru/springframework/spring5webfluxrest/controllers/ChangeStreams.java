@@ -0,0 +1,56 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import guru.springframework.spring5webfluxrest.changes.ChangeFeed;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.ChangeEvent;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Serves change feeds as Server-Sent Events, and publishes the outcomes of bulk
+ * writes to them.
+ */
+final class ChangeStreams {
+
+    private ChangeStreams() {
+    }
+
+    /**
+     * Each event's id is its token, so a reconnecting {@code EventSource} resumes by
+     * itself through {@code Last-Event-ID}. Comments are interleaved while idle to keep
+     * proxies from closing the connection.
+     */
+    static <T> Flux<ServerSentEvent<ChangeEvent<T>>> events(ChangeFeed<T> feed, String after, Duration heartbeat) {
+        Flux<ServerSentEvent<ChangeEvent<T>>> events = feed.subscribe(after)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(event.getToken())
+                        .event(event.getType().name().toLowerCase())
+                        .build());
+
+        Flux<ServerSentEvent<ChangeEvent<T>>> heartbeats = Flux.interval(heartbeat)
+                .map(tick -> ServerSentEvent.<ChangeEvent<T>>builder().comment("heartbeat").build());
+
+        return Flux.merge(events, heartbeats);
+    }
+
+    /**
+     * Bulk results carry no documents, so their events only name the id.
+     */
+    static <T> void publish(ChangeFeed<T> feed, BulkOperationResult result) {
+        switch (result.getStatus()) {
+            case CREATED:
+                feed.inserted(result.getId(), null);
+                break;
+            case UPDATED:
+                feed.updated(result.getId(), null);
+                break;
+            case DELETED:
+                feed.deleted(result.getId());
+                break;
+            default:
+                // Nothing was written
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import guru.springframework.spring5webfluxrest.exceptions.PreconditionFailedException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Strong entity tags derived from document versions.
+ * <p>
+ * A single document's tag is its version, so it is known without serializing the body;
+ * WebFlux compares it with {@code If-None-Match} and answers 304 before the body is
+ * encoded. A list's tag is a digest of its ids and versions.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * Documents written before versioning have no version, which counts as 0.
+     */
+    static String of(Long version) {
+        return "\"" + (version == null ? 0L : version) + "\"";
+    }
+
+    static <T> String ofAll(List<T> documents, Function<T, String> idOf, Function<T, Long> versionOf) {
+        StringBuilder entries = new StringBuilder(documents.size() * 32);
+
+        for (T document : documents) {
+            Long version = versionOf.apply(document);
+            entries.append(idOf.apply(document)).append(':').append(version == null ? 0L : version).append('\n');
+        }
+
+        return "\"" + DigestUtils.md5DigestAsHex(entries.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    static <T> ResponseEntity<T> ok(String etag, T body) {
+        return ResponseEntity.ok().eTag(etag).body(body);
+    }
+
+    /**
+     * Reads the version a conditional write expects from an {@code If-Match} header.
+     *
+     * @return the expected version, or null if the write is unconditional ({@code *} or
+     * no header)
+     * @throws PreconditionFailedException if the header cannot match any version, such
+     *                                     as a weak tag, which If-Match never matches
+     */
+    static Long expectedVersion(String ifMatch, String type, String id) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new PreconditionFailedException(type, id);
+        }
+
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException(type, id);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.ExpandedVendor;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the references of streamed documents for {@code expand} reads.
+ */
+final class Expansions {
+
+    private static final String CATEGORIES = "categories";
+
+    private Expansions() {
+    }
+
+    /**
+     * @throws ResponseStatusException with 400 if the expansion is not supported
+     */
+    static void checkVendorExpansion(String expand) {
+        if (!CATEGORIES.equals(expand.trim())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Unknown expansion <%s>, expected %s", expand, CATEGORIES));
+        }
+    }
+
+    /**
+     * Looks up the categories of a whole window of vendors with one {@code $in} query,
+     * rather than one query per vendor. Windows are resolved a few at a time while the
+     * vendors keep streaming, and are emitted in the order the vendors arrived.
+     */
+    static Flux<ExpandedVendor> withCategories(Flux<Vendor> vendors, CategoryRepository categoryRepository,
+                                               ApiProperties.Expand expand) {
+        return vendors
+                .buffer(expand.getWindowSize())
+                .flatMapSequential(window -> withCategories(window, categoryRepository),
+                        expand.getMaxInFlightWindows());
+    }
+
+    private static Flux<ExpandedVendor> withCategories(List<Vendor> window, CategoryRepository categoryRepository) {
+        Set<String> ids = new LinkedHashSet<>();
+        window.forEach(vendor -> {
+            if (vendor.getCategoryIds() != null) {
+                ids.addAll(vendor.getCategoryIds());
+            }
+        });
+
+        Mono<Map<String, Category>> categories = ids.isEmpty()
+                ? Mono.just(Collections.emptyMap())
+                : categoryRepository.findAllById(ids).collectMap(Category::getId);
+
+        return categories.flatMapIterable(found -> {
+            List<ExpandedVendor> expanded = new ArrayList<>(window.size());
+            window.forEach(vendor -> expanded.add(new ExpandedVendor(vendor, categoriesOf(vendor, found))));
+            return expanded;
+        });
+    }
+
+    private static List<Category> categoriesOf(Vendor vendor, Map<String, Category> found) {
+        if (vendor.getCategoryIds() == null) {
+            return Collections.emptyList();
+        }
+
+        List<Category> categories = new ArrayList<>(vendor.getCategoryIds().size());
+        vendor.getCategoryIds().forEach(id -> {
+            Category category = found.get(id);
+            if (category != null) {
+                categories.add(category);
+            }
+        });
+        return categories;
+    }
+}
@@ -0,0 +1,48 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Validates the {@code fields} parameter of sparse-fieldset reads against the
+ * properties of a domain class, so no arbitrary path reaches the datastore projection.
+ */
+final class FieldSets {
+
+    private FieldSets() {
+    }
+
+    /**
+     * @return the requested properties in request order, without duplicates
+     * @throws ResponseStatusException with 400 if a property does not exist or none is given
+     */
+    static Set<String> of(Collection<String> requested, Class<?> type) {
+        Set<String> fields = new LinkedHashSet<>();
+
+        for (String field : requested) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            Field property = ReflectionUtils.findField(type, name);
+            if (property == null || Modifier.isStatic(property.getModifiers())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        String.format("Unknown field <%s> of %s", name, type.getSimpleName()));
+            }
+            fields.add(name);
+        }
+
+        if (fields.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one field must be requested");
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,41 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates the ids of a multi-get, so a malformed request is a 400 rather than an
+ * error from the datastore lookup.
+ */
+final class MultiGets {
+
+    private MultiGets() {
+    }
+
+    /**
+     * @return the distinct ids, in request order
+     * @throws ResponseStatusException with 400 if no ids, a null or blank id, or more
+     *                                 than {@code maxIds} ids are given
+     */
+    static Set<String> distinctIds(List<String> ids, int maxIds) {
+        if (ids == null || ids.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one id must be requested");
+        }
+        if (ids.size() > maxIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("At most %d ids may be requested at once", maxIds));
+        }
+
+        for (String id : ids) {
+            if (id == null || id.trim().isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ids must not be null or blank");
+            }
+        }
+
+        return new LinkedHashSet<>(ids);
+    }
+}
@@ -1,75 +1,307 @@
 package guru.springframework.spring5webfluxrest.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring5webfluxrest.changes.ChangeFeeds;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.config.WebFluxConfig;
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
 import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.ChangeEvent;
+import guru.springframework.spring5webfluxrest.domain.CursorPage;
+import guru.springframework.spring5webfluxrest.domain.ExpandedVendor;
+import guru.springframework.spring5webfluxrest.domain.MultiGetItem;
 import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.exceptions.PreconditionFailedException;
+import guru.springframework.spring5webfluxrest.exceptions.ResourceNotFoundException;
+import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
 import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
 import lombok.AllArgsConstructor;
 import org.reactivestreams.Publisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
 @RestController
 @RequestMapping("/api/v1/vendors")
 @AllArgsConstructor
 public class VendorController {
 
     private final VendorRepository vendorRepository;
+    private final CategoryRepository categoryRepository;
+    private final ApiProperties apiProperties;
+    private final ChangeFeeds changeFeeds;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * The whole collection at once has no cursor to resume from; {@code after} only
+     * applies to pages and streams, so it is refused rather than ignored.
+     */
     @GetMapping()
-    public Flux<Vendor> getAllVendors() {
-        return vendorRepository.findAll();
+    public Mono<ResponseEntity<List<Vendor>>> getAllVendors(
+            @RequestParam(value = "after", required = false) String after) {
+        if (after != null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "after needs limit, or a streaming media type"));
+        }
+
+        return vendorRepository.findAll()
+                .collectList()
+                .map(vendors -> ETags.ok(ETags.ofAll(vendors, Vendor::getId, Vendor::getVersion), vendors));
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<CursorPage<Vendor>> getVendorPage(@RequestParam("limit") int limit,
+                                                  @RequestParam(value = "after", required = false) String after) {
+        int pageSize = Math.min(Math.max(limit, 1), apiProperties.getPaging().getMaxLimit());
+
+        // Read one extra document to learn whether another page follows
+        return vendorRepository.findPage(after, pageSize + 1)
+                .collectList()
+                .map(vendors -> {
+                    if (vendors.size() <= pageSize) {
+                        return new CursorPage<>(vendors, null);
+                    }
+                    List<Vendor> items = vendors.subList(0, pageSize);
+                    return new CursorPage<>(items, items.get(pageSize - 1).getId());
+                });
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_STREAM_JSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE,
+            WebFluxConfig.APPLICATION_NDJSON_VALUE, WebFluxConfig.APPLICATION_STREAM_SMILE_VALUE,
+            WebFluxConfig.APPLICATION_STREAM_CBOR_VALUE})
+    public Flux<Vendor> streamVendors(@RequestParam(value = "after", required = false) String after) {
+        return vendorRepository.stream(after, apiProperties.getPaging().getCursorBatchSize());
+    }
+
+    @GetMapping(params = {"expand", "!limit", "!fields"})
+    public Flux<ExpandedVendor> getAllVendorsExpanded(@RequestParam("expand") String expand,
+                                                      @RequestParam(value = "after", required = false) String after) {
+        return Flux.defer(() -> {
+            Expansions.checkVendorExpansion(expand);
+
+            return Expansions.withCategories(
+                    vendorRepository.stream(after, apiProperties.getPaging().getCursorBatchSize()),
+                    categoryRepository, apiProperties.getExpand());
+        });
+    }
+
+    @GetMapping(params = {"expand", "limit", "!fields"})
+    public Mono<CursorPage<ExpandedVendor>> getVendorPageExpanded(
+            @RequestParam("expand") String expand, @RequestParam("limit") int limit,
+            @RequestParam(value = "after", required = false) String after) {
+        return Mono.defer(() -> {
+            Expansions.checkVendorExpansion(expand);
+
+            return getVendorPage(limit, after).flatMap(page -> Expansions.withCategories(
+                    Flux.fromIterable(page.getItems()), categoryRepository, apiProperties.getExpand())
+                    .collectList()
+                    .map(items -> new CursorPage<>(items, page.getNext())));
+        });
+    }
+
+    /**
+     * Projections leave out the category ids an expansion needs, so the two do not mix.
+     */
+    @GetMapping(params = {"expand", "fields"})
+    public Flux<ExpandedVendor> getVendorFieldsExpanded() {
+        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "expand cannot be combined with fields"));
+    }
+
+    @GetMapping("/_export")
+    public Mono<Void> exportVendors(@RequestParam(value = "after", required = false) String after,
+                                    ServerHttpResponse response) {
+        return Exports.gzipNdjson(response,
+                vendorRepository.stream(after, apiProperties.getPaging().getCursorBatchSize()),
+                "vendors", objectMapper, apiProperties.getExport());
+    }
+
+    @GetMapping(params = {"fields", "!limit", "!expand"})
+    public Flux<Map<String, Object>> getAllVendorFields(@RequestParam("fields") List<String> fields) {
+        return Flux.defer(() -> vendorRepository.findAllProjected(FieldSets.of(fields, Vendor.class)));
+    }
+
+    /**
+     * Pages are not projected, so rather than silently return whole documents the
+     * combination is refused.
+     */
+    @GetMapping(params = {"fields", "limit", "!expand"})
+    public Flux<Map<String, Object>> getVendorFieldsPage() {
+        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "fields cannot be combined with limit"));
+    }
+
+    @GetMapping("/search")
+    public Flux<Vendor> searchVendors(@RequestParam("q") String q,
+                                      @RequestParam(value = "mode", defaultValue = "prefix") String mode,
+                                      @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return search(q, mode, limit, vendorRepository::searchByNamePrefix, vendorRepository::searchByText);
+    }
+
+    @GetMapping(value = "/search", params = "fields")
+    public Flux<Map<String, Object>> searchVendorFields(@RequestParam("q") String q,
+                                                        @RequestParam(value = "mode", defaultValue = "prefix") String mode,
+                                                        @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                        @RequestParam("fields") List<String> fields) {
+        return Flux.defer(() -> {
+            Set<String> projection = FieldSets.of(fields, Vendor.class);
+
+            return search(q, mode, limit,
+                    (prefix, max) -> vendorRepository.searchByNamePrefixProjected(prefix, max, projection),
+                    (text, max) -> vendorRepository.searchByTextProjected(text, max, projection));
+        });
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChangeEvent<Vendor>>> vendorChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(value = "after", required = false) String after) {
+
+        // An EventSource resumes through the header; other clients may pass the token explicitly
+        return ChangeStreams.events(changeFeeds.getVendors(), lastEventId != null ? lastEventId : after,
+                apiProperties.getChanges().getHeartbeat());
     }
 
     @GetMapping("/{id}")
-    public Mono<Vendor> getVendorById(@PathVariable("id") String id) {
-        return vendorRepository.findById(id);
+    public Mono<ResponseEntity<Vendor>> getVendorById(@PathVariable("id") String id) {
+        return vendorRepository.findById(id)
+                .map(vendor -> ETags.ok(ETags.of(vendor.getVersion()), vendor))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new ResourceNotFoundException("Vendor", id))));
+    }
+
+    @GetMapping(value = "/{id}", params = "fields")
+    public Mono<Map<String, Object>> getVendorFieldsById(@PathVariable("id") String id,
+                                                         @RequestParam("fields") List<String> fields) {
+        return Mono.defer(() -> vendorRepository.findByIdProjected(id, FieldSets.of(fields, Vendor.class)))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new ResourceNotFoundException("Vendor", id))));
+    }
+
+    @PostMapping("/_mget")
+    public Flux<MultiGetItem<Vendor>> multiGetVendors(@RequestBody(required = false) List<String> ids) {
+        return Flux.defer(() -> {
+            Set<String> distinct = MultiGets.distinctIds(ids, apiProperties.getMultiGet().getMaxIds());
+
+            // One $in query for the distinct ids, then answer in the order they were asked for
+            return vendorRepository.findAllById(distinct)
+                    .collectMap(Vendor::getId)
+                    .flatMapMany(found -> Flux.fromIterable(ids)
+                            .map(id -> MultiGetItem.of(id, found.get(id))));
+        });
     }
 
     @PostMapping()
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<Void> createVendor(@RequestBody Publisher<Vendor> vendorPublisher) {
-        return vendorRepository.saveAll(vendorPublisher).then();
+        return vendorRepository.saveAll(vendorPublisher)
+                .doOnNext(saved -> changeFeeds.getVendors().inserted(saved.getId(), saved))
+                .then();
+    }
+
+    @PostMapping(consumes = {MediaType.APPLICATION_STREAM_JSON_VALUE, WebFluxConfig.APPLICATION_NDJSON_VALUE,
+            WebFluxConfig.APPLICATION_STREAM_SMILE_VALUE, WebFluxConfig.APPLICATION_STREAM_CBOR_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BulkInsertResult> ingestVendors(@RequestBody Flux<Vendor> vendorFlux) {
+
+        // The body is decoded one document at a time; flatMap's concurrency bounds the
+        // batches in flight, so reading stops (and TCP pushes back) while they complete
+        ApiProperties.Ingest ingest = apiProperties.getIngest();
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+
+            return vendorFlux
+                    .buffer(ingest.getBatchSize())
+                    .flatMap(vendorRepository::insertBatch, ingest.getMaxInFlightBatches())
+                    .reduce(BulkInsertResult.of(0, 0), BulkInsertResult::plus)
+                    .doOnNext(result -> result.setElapsedMillis(
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)))
+                    // Too many documents to describe one by one: subscribers reload instead
+                    .doOnNext(result -> {
+                        if (result.getInserted() > 0) {
+                            changeFeeds.getVendors().reset();
+                        }
+                    });
+        });
+    }
+
+    @PostMapping("/_bulk")
+    public Flux<BulkOperationResult> bulkVendors(@RequestBody Flux<BulkOperation<Vendor>> operations) {
+
+        // Chunks are answered in request order; flatMapSequential's concurrency bounds the
+        // bulk writes in flight, so reading the body stops while they complete
+        ApiProperties.Bulk bulk = apiProperties.getBulk();
+
+        return operations
+                .buffer(bulk.getChunkSize())
+                .flatMapSequential(vendorRepository::bulkWrite, bulk.getMaxInFlightChunks())
+                .doOnNext(result -> ChangeStreams.publish(changeFeeds.getVendors(), result));
     }
 
     @PutMapping("/{id}")
-    public Mono<Vendor> updateCategory(@PathVariable("id") String id,
-                                       @RequestBody Vendor vendor) {
-        vendor.setId(id);
-        return vendorRepository.save(vendor);
+    public Mono<ResponseEntity<Vendor>> updateCategory(@PathVariable("id") String id,
+                                                       @RequestBody Vendor vendor,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        // Without If-Match this is an upsert, as before; with it, a write conditional on the version
+        return Mono.defer(() -> vendorRepository.replace(id, vendor, ETags.expectedVersion(ifMatch, "Vendor", id)))
+                .onErrorMap(OptimisticLockingFailureException.class,
+                        e -> new PreconditionFailedException("Vendor", id))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new PreconditionFailedException("Vendor", id))))
+                .doOnNext(replaced -> changeFeeds.getVendors().updated(id, replaced))
+                .map(replaced -> ETags.ok(ETags.of(replaced.getVersion()), replaced));
     }
 
     @PatchMapping("/{id}")
-    public Mono<Vendor> patchVendor(@PathVariable("id") String id,
-                                    @RequestBody Vendor vendor) {
-
-        // findById returns Mono.empty() when Vendor with id not found
-        // On block(), empty Mono returns a null
-        Vendor ven = vendorRepository.findById(id).block();
-
-        if (ven != null) {
-            boolean changed = false;
-
-            if (vendor.getFirstName() != null &&
-                    !ven.getFirstName().equals(vendor.getFirstName())) {
-                ven.setFirstName(vendor.getFirstName());
-                changed = true;
-            }
-
-            if (vendor.getLastName() != null &&
-                    !ven.getLastName().equals(vendor.getLastName())) {
-                ven.setLastName(vendor.getLastName());
-                changed = true;
-            }
-
-            if (changed) {
-                return vendorRepository.save(ven);
-            } else {
-                return Mono.just(ven);
-            }
-        } else {
-            throw new RuntimeException(String.format("Vendor with id of <%s> not found", id));
+    public Mono<ResponseEntity<Vendor>> patchVendor(@PathVariable("id") String id,
+                                                    @RequestBody Vendor vendor,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        // patch returns Mono.empty() when Vendor with id not found
+        return Mono.defer(() -> vendorRepository.patch(id, vendor, ETags.expectedVersion(ifMatch, "Vendor", id)))
+                .onErrorMap(OptimisticLockingFailureException.class,
+                        e -> new PreconditionFailedException("Vendor", id))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new ResourceNotFoundException("Vendor", id))))
+                .doOnNext(patched -> changeFeeds.getVendors().updated(id, patched))
+                .map(patched -> ETags.ok(ETags.of(patched.getVersion()), patched));
+    }
+
+    private <T> Flux<T> search(String q, String mode, int limit,
+                               BiFunction<String, Integer, Flux<T>> byPrefix,
+                               BiFunction<String, Integer, Flux<T>> byText) {
+        if (q.trim().isEmpty()) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search text must not be blank"));
+        }
+
+        int maxResults = Math.min(Math.max(limit, 1), apiProperties.getPaging().getMaxLimit());
+
+        switch (mode) {
+            case "prefix":
+                return byPrefix.apply(q.trim(), maxResults);
+            case "text":
+                return byText.apply(q, maxResults);
+            default:
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        String.format("Unknown search mode <%s>, expected prefix or text", mode)));
         }
     }
 
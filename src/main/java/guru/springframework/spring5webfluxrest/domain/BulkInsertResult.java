@@ -0,0 +1,26 @@
+package guru.springframework.spring5webfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkInsertResult {
+
+    private long inserted;
+    private long failed;
+    private long elapsedMillis;
+
+    public static BulkInsertResult of(long inserted, long failed) {
+        return new BulkInsertResult(inserted, failed, 0);
+    }
+
+    public BulkInsertResult plus(BulkInsertResult other) {
+        return new BulkInsertResult(inserted + other.inserted, failed + other.failed,
+                Math.max(elapsedMillis, other.elapsedMillis));
+    }
+}
@@ -0,0 +1,57 @@
+package guru.springframework.spring5webfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One operation of a bulk write.
+ * <ul>
+ * <li>{@code UPSERT} replaces all properties of the document with {@code id}, creating
+ * it if it does not exist (with a new id if none is given).</li>
+ * <li>{@code PATCH} copies the non-null properties of {@code document} onto the
+ * document with {@code id}.</li>
+ * <li>{@code DELETE} removes the document with {@code id}.</li>
+ * </ul>
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkOperation<T> {
+
+    public enum Action {
+        UPSERT, PATCH, DELETE
+    }
+
+    private Action action;
+    private String id;
+    private T document;
+
+    public static <T> BulkOperation<T> upsert(String id, T document) {
+        return new BulkOperation<>(Action.UPSERT, id, document);
+    }
+
+    public static <T> BulkOperation<T> patch(String id, T changes) {
+        return new BulkOperation<>(Action.PATCH, id, changes);
+    }
+
+    public static <T> BulkOperation<T> delete(String id) {
+        return new BulkOperation<>(Action.DELETE, id, null);
+    }
+
+    /**
+     * @return why the operation cannot be executed, or null if it can
+     */
+    public String problem() {
+        if (action == null) {
+            return "An action is required";
+        }
+        if (action != Action.UPSERT && id == null) {
+            return String.format("An id is required to %s", action.name().toLowerCase());
+        }
+        if (action != Action.DELETE && document == null) {
+            return String.format("A document is required to %s", action.name().toLowerCase());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+package guru.springframework.spring5webfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of one operation of a bulk write. {@code error} is only set when the
+ * operation was {@code INVALID} or {@code FAILED}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkOperationResult {
+
+    public enum Status {
+        CREATED, UPDATED, DELETED, NOT_FOUND, INVALID, DUPLICATE, FAILED
+    }
+
+    private BulkOperation.Action action;
+    private String id;
+    private Status status;
+    private String error;
+
+    public static BulkOperationResult of(BulkOperation<?> operation, String id, Status status) {
+        return new BulkOperationResult(operation.getAction(), id, status, null);
+    }
+
+    public static BulkOperationResult failed(BulkOperation<?> operation, String id, Status status, String error) {
+        return new BulkOperationResult(operation.getAction(), id, status, error);
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
@@ -17,5 +18,8 @@ public class Category {
     @Id
     private String id;
 
+    @Version
+    private Long version;
+
     private String description;
 }
@@ -0,0 +1,30 @@
+package guru.springframework.spring5webfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One write to a collection, as published on its change feed.
+ * <p>
+ * {@code token} identifies the position of the event in the feed; a client resumes
+ * after it. {@code document} is the state after the write when the writer had it, and
+ * null otherwise (deletes and bulk writes), in which case clients fetch it by id.
+ * {@code RESET} carries neither id nor document: the client must reload the collection,
+ * either because it resumed from a position the feed no longer holds, or because a bulk
+ * ingest changed too much to describe.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChangeEvent<T> {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE, RESET
+    }
+
+    private String token;
+    private Type type;
+    private String id;
+    private T document;
+}
@@ -0,0 +1,23 @@
+package guru.springframework.spring5webfluxrest.domain;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A vendor with its categories resolved, written as the vendor's own properties plus
+ * {@code categories}. Ids of categories that no longer exist are left out.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpandedVendor {
+
+    @JsonUnwrapped
+    private Vendor vendor;
+
+    private List<Category> categories;
+}
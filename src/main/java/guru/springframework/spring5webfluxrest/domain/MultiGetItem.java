@@ -0,0 +1,23 @@
+package guru.springframework.spring5webfluxrest.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of looking up one id of a multi-get. {@code document} is null when
+ * {@code found} is false.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MultiGetItem<T> {
+
+    private String id;
+    private boolean found;
+    private T document;
+
+    public static <T> MultiGetItem<T> of(String id, T document) {
+        return new MultiGetItem<>(id, document != null, document);
+    }
+}
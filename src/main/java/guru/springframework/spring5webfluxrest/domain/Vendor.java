@@ -5,10 +5,23 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.List;
+
 @Data
 @Document
+@CompoundIndexes({
+        // Prefix search runs on lowercased copies of the names, kept by VendorSearchKeys
+        @CompoundIndex(name = "lastNameLower", def = "{'lastNameLower': 1}"),
+        @CompoundIndex(name = "firstNameLower", def = "{'firstNameLower': 1}"),
+        // Vendors of a category, in id order, straight from the (multikey) index
+        @CompoundIndex(name = "categoryIds_id", def = "{'categoryIds': 1, '_id': 1}")
+})
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -17,7 +30,16 @@ public class Vendor {
     @Id
     private String id;
 
+    @Version
+    private Long version;
+
+    @TextIndexed
     private String firstName;
+
+    @TextIndexed
     private String lastName;
 
+    // Ids of the categories the vendor belongs to
+    private List<String> categoryIds;
+
 }
@@ -0,0 +1,17 @@
+package guru.springframework.spring5webfluxrest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+/**
+ * Signals that a datastore operation missed its deadline. Rendered by WebFlux as a 504.
+ */
+public class DatastoreTimeoutException extends ResponseStatusException {
+
+    public DatastoreTimeoutException(String operation, Duration deadline, Throwable cause) {
+        super(HttpStatus.GATEWAY_TIMEOUT,
+                String.format("Datastore did not answer %s within %d ms", operation, deadline.toMillis()), cause);
+    }
+}
@@ -0,0 +1,15 @@
+package guru.springframework.spring5webfluxrest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Signals that a datastore operation was refused without being attempted, because
+ * recent operations failed. Rendered by WebFlux as a 503.
+ */
+public class DatastoreUnavailableException extends ResponseStatusException {
+
+    public DatastoreUnavailableException(String repository) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, String.format("Datastore of %s is unavailable", repository));
+    }
+}
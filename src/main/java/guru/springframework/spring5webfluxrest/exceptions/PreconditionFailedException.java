@@ -0,0 +1,15 @@
+package guru.springframework.spring5webfluxrest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Signals that a conditional write was refused because the document no longer has the
+ * version the client sent in {@code If-Match}. Rendered by WebFlux as a 412.
+ */
+public class PreconditionFailedException extends ResponseStatusException {
+
+    public PreconditionFailedException(String type, String id) {
+        super(HttpStatus.PRECONDITION_FAILED, String.format("%s with id of <%s> has been modified", type, id));
+    }
+}
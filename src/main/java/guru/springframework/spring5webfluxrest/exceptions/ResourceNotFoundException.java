@@ -0,0 +1,15 @@
+package guru.springframework.spring5webfluxrest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Signals that the document addressed by a request does not exist.
+ * Rendered by WebFlux as a 404 rather than a generic 500.
+ */
+public class ResourceNotFoundException extends ResponseStatusException {
+
+    public ResourceNotFoundException(String type, String id) {
+        super(HttpStatus.NOT_FOUND, String.format("%s with id of <%s> not found", type, id));
+    }
+}
@@ -0,0 +1,136 @@
+package guru.springframework.spring5webfluxrest.limiter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A concurrency limit that follows the observed latency of the work it guards, in the
+ * style of a gradient limiter.
+ * <p>
+ * Two moving averages of the latency samples are kept: a short one following the
+ * current latency, and a long one serving as the baseline. While the short average
+ * stays within {@code tolerance} of the baseline the limit grows by about its square
+ * root per sample, probing for spare capacity; once latency rises beyond that, the
+ * limit shrinks in proportion (by at most half per sample), so queueing in the
+ * datastore turns into fast rejections instead of ever longer waits. The limit only
+ * grows while at least half of it is in use, so an idle service does not drift to the
+ * maximum.
+ * <p>
+ * Every repository call reports a sample, from every event loop, so the averages and
+ * the limit are one immutable state replaced by compare-and-set rather than guarded by
+ * a lock.
+ */
+public class AdaptiveLimiter {
+
+    private static final double SHORT_WEIGHT = 0.1;
+
+    private static final double LONG_WEIGHT = 1.0 / 500;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicReference<State> state;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.state = new AtomicReference<>(new State(initialLimit, 0, 0));
+    }
+
+    /**
+     * Takes one unit of the limit if any is left.
+     *
+     * @return whether the caller may proceed; if so it must {@link #release()} once done
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Adjusts the limit to one latency sample of the guarded work.
+     */
+    public void onSample(long latencyNanos) {
+        while (true) {
+            State current = state.get();
+
+            if (state.compareAndSet(current, current.next(latencyNanos))) {
+                return;
+            }
+        }
+    }
+
+    public int getLimit() {
+        return state.get().limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private final class State {
+
+        private final double estimate;
+
+        private final int limit;
+
+        private final double shortLatency;
+
+        private final double longLatency;
+
+        private State(double estimate, double shortLatency, double longLatency) {
+            this.estimate = estimate;
+            this.limit = (int) estimate;
+            this.shortLatency = shortLatency;
+            this.longLatency = longLatency;
+        }
+
+        /**
+         * @return the state after the sample
+         */
+        private State next(long latencyNanos) {
+            if (longLatency == 0) {
+                return new State(estimate, latencyNanos, latencyNanos);
+            }
+
+            double nextShort = shortLatency + (latencyNanos - shortLatency) * SHORT_WEIGHT;
+            double nextLong = longLatency + (latencyNanos - longLatency) * LONG_WEIGHT;
+
+            // After a lasting shift to lower latency, let the baseline catch up quickly
+            if (nextLong > nextShort * 2) {
+                nextLong = nextShort * 2;
+            }
+
+            // The limit is only evidence of capacity while it is actually being used
+            if (inFlight.get() < estimate / 2) {
+                return new State(estimate, nextShort, nextLong);
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * nextLong / nextShort));
+            double target = estimate * gradient + Math.sqrt(estimate);
+
+            return new State(Math.max(minLimit, Math.min(maxLimit, estimate * (1 - smoothing) + target * smoothing)),
+                    nextShort, nextLong);
+        }
+    }
+}
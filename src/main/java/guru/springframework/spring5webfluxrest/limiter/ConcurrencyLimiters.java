@@ -0,0 +1,69 @@
+package guru.springframework.spring5webfluxrest.limiter;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * The read and write concurrency limits, with their metrics.
+ * <p>
+ * Publishes {@code api.limiter.limit} and {@code api.limiter.inflight} gauges and an
+ * {@code api.limiter.shed} counter, each tagged with the budget ({@code read} or
+ * {@code write}).
+ */
+@Component
+@ConditionalOnProperty(name = "api.limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimiters {
+
+    @Getter
+    private final AdaptiveLimiter reads;
+
+    @Getter
+    private final AdaptiveLimiter writes;
+
+    private final Counter readsShed;
+
+    private final Counter writesShed;
+
+    public ConcurrencyLimiters(ApiProperties apiProperties, MeterRegistry meterRegistry) {
+        ApiProperties.Limiter properties = apiProperties.getLimiter();
+
+        reads = limiter(properties, properties.getReads());
+        writes = limiter(properties, properties.getWrites());
+        readsShed = register(meterRegistry, "read", reads);
+        writesShed = register(meterRegistry, "write", writes);
+    }
+
+    /**
+     * Picks the budget for a request or a repository method.
+     */
+    public AdaptiveLimiter budget(boolean read) {
+        return read ? reads : writes;
+    }
+
+    public void shed(AdaptiveLimiter limiter) {
+        (limiter == reads ? readsShed : writesShed).increment();
+    }
+
+    private static AdaptiveLimiter limiter(ApiProperties.Limiter properties, ApiProperties.Budget budget) {
+        return new AdaptiveLimiter(budget.getInitialLimit(), budget.getMinLimit(), budget.getMaxLimit(),
+                properties.getTolerance(), properties.getSmoothing());
+    }
+
+    private static Counter register(MeterRegistry meterRegistry, String budget, AdaptiveLimiter limiter) {
+        Gauge.builder("api.limiter.limit", limiter, AdaptiveLimiter::getLimit)
+                .tag("budget", budget)
+                .register(meterRegistry);
+        Gauge.builder("api.limiter.inflight", limiter, AdaptiveLimiter::getInFlight)
+                .tag("budget", budget)
+                .register(meterRegistry);
+
+        return Counter.builder("api.limiter.shed")
+                .tag("budget", budget)
+                .register(meterRegistry);
+    }
+}
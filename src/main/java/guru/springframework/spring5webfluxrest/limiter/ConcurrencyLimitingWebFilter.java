@@ -0,0 +1,83 @@
+package guru.springframework.spring5webfluxrest.limiter;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Admits API requests only while their budget's concurrency limit has room, and
+ * rejects the rest at once with a 503 (or 429) and {@code Retry-After}, before any
+ * work is done for them. The limit adapts to datastore latency, which the
+ * {@link guru.springframework.spring5webfluxrest.repositories.support.LimiterSamplingInterceptorFactory}
+ * samples. A streamed response holds its unit of the limit until the stream ends;
+ * change feed subscriptions are not limited, and exports, which may run for hours, are
+ * left to the {@link ExportLimitingWebFilter}.
+ */
+@Component
+@ConditionalOnProperty(name = "api.limiter.enabled", havingValue = "true", matchIfMissing = true)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@AllArgsConstructor
+public class ConcurrencyLimitingWebFilter implements WebFilter {
+
+    private static final String API_PATH = "/api/";
+
+    private static final String CHANGES_PATH = "/changes";
+
+    private final ConcurrencyLimiters limiters;
+    private final ApiProperties apiProperties;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+
+        String path = request.getPath().pathWithinApplication().value();
+
+        // A change feed subscription is idle most of its life, and would hold a unit for good
+        if (!path.startsWith(API_PATH) || path.endsWith(CHANGES_PATH)) {
+            return chain.filter(exchange);
+        }
+
+        // A unit of the read budget held for a whole dump would starve ordinary reads
+        if (ExportLimitingWebFilter.isExport(exchange)) {
+            return chain.filter(exchange);
+        }
+
+        AdaptiveLimiter limiter = limiters.budget(isRead(request));
+
+        if (!limiter.tryAcquire()) {
+            limiters.shed(limiter);
+            return reject(exchange.getResponse(), apiProperties.getLimiter());
+        }
+
+        return chain.filter(exchange).doFinally(signal -> limiter.release());
+    }
+
+    static Mono<Void> reject(ServerHttpResponse response, ApiProperties.Limiter properties) {
+        response.setStatusCode(HttpStatus.valueOf(properties.getRejectStatus()));
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, properties.getRetryAfter().getSeconds())));
+        return response.setComplete();
+    }
+
+    /**
+     * Multi-gets are POSTs only to carry their ids, so they count as reads.
+     */
+    private static boolean isRead(ServerHttpRequest request) {
+        HttpMethod method = request.getMethod();
+
+        return method == HttpMethod.GET || method == HttpMethod.HEAD
+                || request.getPath().pathWithinApplication().value().endsWith("/_mget");
+    }
+}
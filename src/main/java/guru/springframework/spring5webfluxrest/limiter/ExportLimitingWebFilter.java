@@ -0,0 +1,49 @@
+package guru.springframework.spring5webfluxrest.limiter;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import lombok.AllArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs at most {@code api.export.max-concurrent} exports at once, rejecting the rest
+ * as the {@link ConcurrencyLimitingWebFilter} rejects requests it sheds. An export
+ * lasts as long as the dump takes, so it takes no part in the adaptive read limit;
+ * this cap applies whether or not that limit is enabled.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@AllArgsConstructor
+public class ExportLimitingWebFilter implements WebFilter {
+
+    static final String EXPORT_PATH = "/_export";
+
+    private final ApiProperties apiProperties;
+
+    private final AtomicInteger exports = new AtomicInteger();
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!isExport(exchange)) {
+            return chain.filter(exchange);
+        }
+
+        if (exports.incrementAndGet() > apiProperties.getExport().getMaxConcurrent()) {
+            exports.decrementAndGet();
+            return ConcurrencyLimitingWebFilter.reject(exchange.getResponse(), apiProperties.getLimiter());
+        }
+
+        return chain.filter(exchange).doFinally(signal -> exports.decrementAndGet());
+    }
+
+    static boolean isExport(ServerWebExchange exchange) {
+        return exchange.getRequest().getPath().pathWithinApplication().value().endsWith(EXPORT_PATH);
+    }
+}
@@ -0,0 +1,77 @@
+package guru.springframework.spring5webfluxrest.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.ipc.netty.http.HttpResources;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saturation metrics for the Netty event loops that serve HTTP requests.
+ * <p>
+ * {@code reactor.netty.eventloop.pending.tasks} gauges the task queue of each loop, and
+ * {@code reactor.netty.eventloop.lag} records how long a probe task submitted every
+ * second waits before a loop runs it. A busy or blocked loop shows up as lag long
+ * before it shows up as request latency.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventLoopMetrics {
+
+    private static final Duration PROBE_INTERVAL = Duration.ofSeconds(1);
+
+    private final MeterRegistry meterRegistry;
+
+    private Disposable probe;
+
+    @PostConstruct
+    public void bind() {
+        // The server uses the global HttpResources loops, preferring native transport
+        EventLoopGroup group = HttpResources.get().onServer(true);
+        int index = 0;
+
+        for (EventExecutor executor : group) {
+            String loop = String.valueOf(index++);
+
+            if (executor instanceof SingleThreadEventExecutor) {
+                Gauge.builder("reactor.netty.eventloop.pending.tasks", (SingleThreadEventExecutor) executor,
+                        SingleThreadEventExecutor::pendingTasks)
+                        .tag("loop", loop)
+                        .description("Tasks waiting to run on the event loop")
+                        .register(meterRegistry);
+            }
+        }
+
+        probe = Flux.interval(PROBE_INTERVAL)
+                .subscribe(tick -> {
+                    int loop = 0;
+
+                    for (EventExecutor executor : group) {
+                        Timer lag = Timer.builder("reactor.netty.eventloop.lag")
+                                .tag("loop", String.valueOf(loop++))
+                                .publishPercentileHistogram()
+                                .register(meterRegistry);
+                        long submitted = System.nanoTime();
+                        executor.execute(() -> lag.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS));
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void unbind() {
+        if (probe != null) {
+            probe.dispose();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package guru.springframework.spring5webfluxrest.metrics;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolOpenedEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks each server's connection pool as gauges tagged with the server address:
+ * {@code mongodb.driver.pool.size}, {@code .checkedout} and {@code .waitqueuesize}. A
+ * growing wait queue means requests are waiting for a connection, not for the server.
+ */
+@AllArgsConstructor
+public class MongoConnectionPoolMetrics extends ConnectionPoolListenerAdapter {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<ServerId, AtomicInteger> size = new ConcurrentHashMap<>();
+    private final Map<ServerId, AtomicInteger> checkedOut = new ConcurrentHashMap<>();
+    private final Map<ServerId, AtomicInteger> waitQueueSize = new ConcurrentHashMap<>();
+
+    @Override
+    public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
+        ServerId serverId = event.getServerId();
+        register("mongodb.driver.pool.size", "Connections in the pool", serverId, size);
+        register("mongodb.driver.pool.checkedout", "Connections in use", serverId, checkedOut);
+        register("mongodb.driver.pool.waitqueuesize", "Operations waiting for a connection", serverId, waitQueueSize);
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        counter(size, event.getConnectionId().getServerId()).incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        counter(size, event.getConnectionId().getServerId()).decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        counter(checkedOut, event.getConnectionId().getServerId()).incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        counter(checkedOut, event.getConnectionId().getServerId()).decrementAndGet();
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        counter(waitQueueSize, event.getServerId()).incrementAndGet();
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        counter(waitQueueSize, event.getServerId()).decrementAndGet();
+    }
+
+    private void register(String name, String description, ServerId serverId, Map<ServerId, AtomicInteger> values) {
+        Gauge.builder(name, counter(values, serverId), AtomicInteger::get)
+                .tag("server", serverId.getAddress().toString())
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private static AtomicInteger counter(Map<ServerId, AtomicInteger> values, ServerId serverId) {
+        return values.computeIfAbsent(serverId, id -> new AtomicInteger());
+    }
+}
@@ -0,0 +1,79 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.InsertManyOptions;
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Shared unordered bulk insert logic.
+ */
+final class BulkInserts {
+
+    private BulkInserts() {
+    }
+
+    /**
+     * Inserts the batch with a single unordered {@code insertMany}. Being unordered, a
+     * failing document (e.g. a duplicate key) does not stop the rest of the batch; the
+     * failures are counted rather than propagated.
+     */
+    static <T> Mono<BulkInsertResult> insertUnordered(ReactiveMongoOperations operations,
+                                                      List<T> batch, Class<T> entityClass) {
+        return insertUnordered(operations, batch, entityClass, document -> {
+        });
+    }
+
+    /**
+     * @param prepare completes each converted document, as a save listener would
+     */
+    static <T> Mono<BulkInsertResult> insertUnordered(ReactiveMongoOperations operations, List<T> batch,
+                                                      Class<T> entityClass, Consumer<Document> prepare) {
+        if (batch.isEmpty()) {
+            return Mono.just(BulkInsertResult.of(0, 0));
+        }
+
+        MongoConverter converter = operations.getConverter();
+        List<Document> documents = new ArrayList<>(batch.size());
+
+        for (T entity : batch) {
+            Document document = new Document();
+            converter.write(entity, document);
+            // insertMany bypasses the template, so start the version the way insert would
+            document.putIfAbsent(Patches.VERSION, 0L);
+            prepare.accept(document);
+            documents.add(document);
+        }
+
+        return operations.execute(entityClass, collection ->
+                collection.insertMany(documents, new InsertManyOptions().ordered(false)))
+                .then(Mono.fromSupplier(() -> BulkInsertResult.of(documents.size(), 0)))
+                .onErrorResume(error -> {
+                    MongoBulkWriteException failure = bulkWriteFailure(error);
+
+                    if (failure == null) {
+                        return Mono.error(error);
+                    }
+
+                    int failed = failure.getWriteErrors().size();
+                    return Mono.just(BulkInsertResult.of(documents.size() - failed, failed));
+                });
+    }
+
+    static MongoBulkWriteException bulkWriteFailure(Throwable error) {
+        // The template may have translated the driver exception, so look through the causes
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException) {
+                return (MongoBulkWriteException) cause;
+            }
+        }
+        return null;
+    }
+}
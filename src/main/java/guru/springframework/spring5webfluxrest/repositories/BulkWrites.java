@@ -0,0 +1,214 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult.Status;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Shared unordered bulk write logic for mixed upserts, patches and deletes.
+ */
+final class BulkWrites {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private BulkWrites() {
+    }
+
+    /**
+     * Executes the operations with a single unordered {@code bulkWrite}, as
+     * {@link Patches} would one at a time: upserts set every field, patches the non-null
+     * ones, and both increment the version. Like {@link Patches#findAndPatch}, a patch
+     * only writes when some field differs, so one that changes nothing keeps the version
+     * (and the ETag) and is still reported as updated.
+     * <p>
+     * A bulk write only reports totals, so to tell which patches and deletes found their
+     * document the ids they target are first read in one {@code $in} query on
+     * {@code _id}, skipped when the chunk holds only upserts. Being unordered, a failing
+     * operation does not stop the rest; it is reported in its result, as is an invalid
+     * one, which is never sent.
+     *
+     * @return one result per operation, in the order of the operations
+     */
+    static <T> Flux<BulkOperationResult> writeUnordered(ReactiveMongoOperations operations,
+                                                        List<BulkOperation<T>> chunk, Class<T> entityClass,
+                                                        Function<T, Map<String, Object>> replacementOf,
+                                                        Function<T, Map<String, Object>> changesOf) {
+        return Flux.defer(() -> {
+            BulkOperationResult[] results = new BulkOperationResult[chunk.size()];
+            String[] ids = new String[chunk.size()];
+            List<WriteModel<Document>> models = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            Set<Object> lookups = new HashSet<>();
+
+            for (int i = 0; i < chunk.size(); i++) {
+                BulkOperation<T> operation = chunk.get(i);
+                String problem = operation.problem();
+
+                if (problem != null) {
+                    results[i] = BulkOperationResult.failed(operation, operation.getId(), Status.INVALID, problem);
+                    continue;
+                }
+
+                String id = operation.getId() == null ? new ObjectId().toHexString() : operation.getId();
+                Document filter = new Document("_id", Projections.storedId(id));
+                ids[i] = id;
+
+                switch (operation.getAction()) {
+                    case UPSERT:
+                        models.add(new UpdateOneModel<>(filter, update(replacementOf.apply(operation.getDocument())),
+                                new UpdateOptions().upsert(true)));
+                        positions.add(i);
+                        break;
+
+                    case PATCH:
+                        lookups.add(Projections.storedId(id));
+                        Map<String, Object> changes = changesOf.apply(operation.getDocument());
+                        // Nothing to set: the result only depends on whether the document exists
+                        if (!changes.isEmpty()) {
+                            models.add(new UpdateOneModel<>(differing(filter, changes), update(changes)));
+                            positions.add(i);
+                        }
+                        break;
+
+                    case DELETE:
+                        lookups.add(Projections.storedId(id));
+                        models.add(new DeleteOneModel<>(filter));
+                        positions.add(i);
+                        break;
+                }
+            }
+
+            return existing(operations, lookups, entityClass)
+                    .flatMap(found -> execute(operations, models, entityClass)
+                            .map(outcome -> {
+                                fill(results, ids, chunk, positions, outcome, found);
+                                return Arrays.asList(results);
+                            }))
+                    .flatMapIterable(Function.identity());
+        });
+    }
+
+    private static Mono<Set<String>> existing(ReactiveMongoOperations operations, Set<Object> ids,
+                                              Class<?> entityClass) {
+        if (ids.isEmpty()) {
+            return Mono.just(Collections.emptySet());
+        }
+
+        return operations.execute(entityClass, collection ->
+                collection.find(Filters.in("_id", ids)).projection(new Document("_id", 1)))
+                .map(document -> idOf(document.get("_id")))
+                .collect(Collectors.toSet());
+    }
+
+    private static Mono<Outcome> execute(ReactiveMongoOperations operations, List<WriteModel<Document>> models,
+                                         Class<?> entityClass) {
+        if (models.isEmpty()) {
+            return Mono.just(new Outcome(Collections.emptyList(), Collections.emptyList()));
+        }
+
+        return operations.execute(entityClass, collection ->
+                collection.bulkWrite(models, new BulkWriteOptions().ordered(false)))
+                .next()
+                .map(result -> new Outcome(upserts(result), Collections.emptyList()))
+                .onErrorResume(error -> {
+                    MongoBulkWriteException failure = BulkInserts.bulkWriteFailure(error);
+
+                    if (failure == null) {
+                        return Mono.error(error);
+                    }
+                    return Mono.just(new Outcome(upserts(failure.getWriteResult()), failure.getWriteErrors()));
+                });
+    }
+
+    private static <T> void fill(BulkOperationResult[] results, String[] ids, List<BulkOperation<T>> chunk,
+                                 List<Integer> positions, Outcome outcome, Set<String> found) {
+        Map<Integer, BulkWriteError> errors = new HashMap<>();
+        outcome.errors.forEach(error -> errors.put(positions.get(error.getIndex()), error));
+
+        Set<Integer> created = new HashSet<>();
+        outcome.upserts.forEach(index -> created.add(positions.get(index)));
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+
+            BulkOperation<T> operation = chunk.get(i);
+            BulkWriteError error = errors.get(i);
+
+            if (error != null) {
+                results[i] = BulkOperationResult.failed(operation, ids[i],
+                        error.getCode() == DUPLICATE_KEY ? Status.DUPLICATE : Status.FAILED, error.getMessage());
+            } else if (operation.getAction() == BulkOperation.Action.UPSERT) {
+                results[i] = BulkOperationResult.of(operation, ids[i],
+                        created.contains(i) ? Status.CREATED : Status.UPDATED);
+            } else if (!found.contains(ids[i])) {
+                results[i] = BulkOperationResult.of(operation, ids[i], Status.NOT_FOUND);
+            } else {
+                results[i] = BulkOperationResult.of(operation, ids[i],
+                        operation.getAction() == BulkOperation.Action.DELETE ? Status.DELETED : Status.UPDATED);
+            }
+        }
+    }
+
+    /**
+     * The filter of {@link Patches#differingQuery}: the document, if at least one of the
+     * fields differs from its new value.
+     */
+    private static Document differing(Document filter, Map<String, Object> changes) {
+        List<Document> differences = new ArrayList<>();
+        changes.forEach((field, value) -> differences.add(new Document(field, new Document("$ne", value))));
+
+        return new Document(filter).append("$or", differences);
+    }
+
+    private static Document update(Map<String, Object> fields) {
+        return new Document("$set", new Document(fields)).append("$inc", new Document(Patches.VERSION, 1));
+    }
+
+    private static List<Integer> upserts(BulkWriteResult result) {
+        return result.getUpserts().stream().map(BulkWriteUpsert::getIndex).collect(Collectors.toList());
+    }
+
+    private static String idOf(Object storedId) {
+        return storedId instanceof ObjectId ? ((ObjectId) storedId).toHexString() : String.valueOf(storedId);
+    }
+
+    private static final class Outcome {
+
+        private final List<Integer> upserts;
+
+        private final List<BulkWriteError> errors;
+
+        private Outcome(List<Integer> upserts, List<BulkWriteError> errors) {
+            this.upserts = upserts;
+            this.errors = errors;
+        }
+    }
+}
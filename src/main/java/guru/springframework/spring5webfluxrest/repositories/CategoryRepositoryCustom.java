@@ -0,0 +1,76 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.Category;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface CategoryRepositoryCustom {
+
+    /**
+     * Copies the non-null properties of {@code changes} onto the category with the given id.
+     *
+     * @param expectedVersion the version the category must have, or null for any
+     * @return the category after the patch, or empty if no category has the id; an
+     * {@link org.springframework.dao.OptimisticLockingFailureException} if the version differs
+     */
+    Mono<Category> patch(String id, Category changes, Long expectedVersion);
+
+    /**
+     * Replaces all properties of the category with the given id. Without an expected version
+     * the category is created if it does not exist.
+     *
+     * @param expectedVersion the version the category must have, or null for any
+     * @return the replaced category, or empty if an expected version was given and no category has
+     * the id; an {@link org.springframework.dao.OptimisticLockingFailureException} if the
+     * version differs
+     */
+    Mono<Category> replace(String id, Category category, Long expectedVersion);
+
+    /**
+     * Inserts the batch with one unordered bulk write.
+     *
+     * @return the number of inserted and failed documents
+     */
+    Mono<BulkInsertResult> insertBatch(List<Category> categories);
+
+    /**
+     * Executes the upserts, patches and deletes with one unordered bulk write.
+     *
+     * @return one result per operation, in the order of the operations
+     */
+    Flux<BulkOperationResult> bulkWrite(List<BulkOperation<Category>> operations);
+
+    /**
+     * Reads up to {@code limit} categories in id order, starting after the given id.
+     *
+     * @param after the id to seek past, or null to start at the beginning
+     */
+    Flux<Category> findPage(String after, int limit);
+
+    /**
+     * Streams the categories in id order straight from the datastore cursor.
+     *
+     * @param after     the id to seek past, or null to start at the beginning
+     * @param batchSize the number of documents fetched per cursor round trip
+     */
+    Flux<Category> stream(String after, int batchSize);
+
+    /**
+     * Reads only the given properties of every category, without mapping whole documents.
+     *
+     * @return one map of property name to value per category
+     */
+    Flux<Map<String, Object>> findAllProjected(Collection<String> fields);
+
+    /**
+     * Reads only the given properties of the category with the given id.
+     */
+    Mono<Map<String, Object>> findByIdProjected(String id, Collection<String> fields);
+}
@@ -0,0 +1,82 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.Category;
+import lombok.AllArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@AllArgsConstructor
+public class CategoryRepositoryImpl implements CategoryRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Override
+    public Mono<Category> patch(String id, Category changes, Long expectedVersion) {
+        return Patches.findAndPatch(mongoOperations, id, changesOf(changes), expectedVersion,
+                Category.class, Category::getVersion);
+    }
+
+    @Override
+    public Mono<Category> replace(String id, Category category, Long expectedVersion) {
+        return Patches.findAndReplace(mongoOperations, id, replacementOf(category), expectedVersion, Category.class);
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertBatch(List<Category> categories) {
+        return BulkInserts.insertUnordered(mongoOperations, categories, Category.class);
+    }
+
+    @Override
+    public Flux<BulkOperationResult> bulkWrite(List<BulkOperation<Category>> operations) {
+        return BulkWrites.writeUnordered(mongoOperations, operations, Category.class,
+                CategoryRepositoryImpl::replacementOf, CategoryRepositoryImpl::changesOf);
+    }
+
+    @Override
+    public Flux<Category> findPage(String after, int limit) {
+        return Cursors.page(mongoOperations, after, limit, Category.class);
+    }
+
+    @Override
+    public Flux<Category> stream(String after, int batchSize) {
+        return Cursors.stream(mongoOperations, after, batchSize, Category.class);
+    }
+
+    @Override
+    public Flux<Map<String, Object>> findAllProjected(Collection<String> fields) {
+        return Projections.find(mongoOperations, new Query(), fields, Category.class);
+    }
+
+    @Override
+    public Mono<Map<String, Object>> findByIdProjected(String id, Collection<String> fields) {
+        return MaxTimes.find(Projections.byId(id),
+                query -> Projections.find(mongoOperations, query, fields, Category.class)).next();
+    }
+
+    static Map<String, Object> changesOf(Category category) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+
+        if (category.getDescription() != null) {
+            changes.put("description", category.getDescription());
+        }
+
+        return changes;
+    }
+
+    static Map<String, Object> replacementOf(Category category) {
+        // Every field is set, including nulls: a replacement clears what it omits
+        Map<String, Object> replacement = new LinkedHashMap<>();
+        replacement.put("description", category.getDescription());
+        return replacement;
+    }
+}
@@ -0,0 +1,47 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Shared keyset (seek on {@code _id}) read logic. Both reads walk the {@code _id}
+ * index, so their cost does not grow with how far into the collection they start.
+ */
+final class Cursors {
+
+    private Cursors() {
+    }
+
+    static <T> Flux<T> page(ReactiveMongoOperations operations, String after, int limit,
+                            Class<T> entityClass) {
+        Query query = after == null ? new Query() : query(where("id").gt(after));
+
+        return MaxTimes.find(query.with(Sort.by(Sort.Direction.ASC, "id")).limit(limit),
+                bounded -> operations.find(bounded, entityClass));
+    }
+
+    /**
+     * Streams every document after the given id (or all of them) in {@code _id} order,
+     * fetching {@code batchSize} documents per cursor round trip. Documents are emitted
+     * as each batch arrives rather than being collected first.
+     */
+    static <T> Flux<T> stream(ReactiveMongoOperations operations, String after, int batchSize,
+                              Class<T> entityClass) {
+        MongoConverter converter = operations.getConverter();
+        Document filter = after == null ? new Document()
+                : new Document("_id", new Document("$gt", ObjectId.isValid(after) ? new ObjectId(after) : after));
+
+        return operations.execute(entityClass, collection -> collection.find(filter)
+                .sort(new Document("_id", 1))
+                .batchSize(batchSize))
+                .map(document -> converter.read(entityClass, document));
+    }
+}
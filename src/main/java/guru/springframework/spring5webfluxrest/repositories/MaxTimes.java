@@ -0,0 +1,27 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.repositories.support.Deadline;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Passes the time left to the caller's {@link Deadline} on to the datastore as the
+ * query's {@code maxTimeMS}, so a query nobody waits for any more is abandoned there
+ * too. Only for bounded queries: max time counts the whole cursor, so a stream over a
+ * collection would be cut short.
+ */
+final class MaxTimes {
+
+    private MaxTimes() {
+    }
+
+    static <T> Flux<T> find(Query query, Function<Query, Flux<T>> find) {
+        return Mono.subscriberContext().flatMapMany(context -> {
+            long remaining = Deadline.remainingMillis(context);
+            return find.apply(remaining > 0 ? query.maxTimeMsec(remaining) : query);
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Shared find-and-modify logic for partial and full updates. Every write increments
+ * the document's version, and takes an optional expected version that turns it into a
+ * conditional write.
+ */
+final class Patches {
+
+    static final String VERSION = "version";
+
+    private Patches() {
+    }
+
+    /**
+     * Applies the given field changes to the document with the given id in a single
+     * round trip. The update only matches when at least one field actually differs, so
+     * a patch that changes nothing never issues a write; in that case (or when there is
+     * nothing to change) the current document is read back instead.
+     *
+     * @param expectedVersion the version the document must have, or null for any
+     * @return the patched (or unchanged) document, or empty if no document has the id
+     * @throws OptimisticLockingFailureException (as an error signal) if the document
+     *                                           does not have the expected version
+     */
+    static <T> Mono<T> findAndPatch(ReactiveMongoOperations operations, String id, Map<String, Object> changes,
+                                    Long expectedVersion, Class<T> entityClass, Function<T, Long> versionOf) {
+
+        Mono<T> current = Mono.defer(() -> operations.findById(id, entityClass))
+                .flatMap(document -> hasVersion(document, expectedVersion, versionOf)
+                        ? Mono.just(document)
+                        : Mono.error(conflict(entityClass, id)));
+
+        if (changes.isEmpty()) {
+            return current;
+        }
+
+        Query query = differingQuery(id, changes);
+        if (expectedVersion != null) {
+            query.addCriteria(versionIs(expectedVersion));
+        }
+
+        return operations.findAndModify(query, update(changes).inc(VERSION, 1), options().returnNew(true), entityClass)
+                .switchIfEmpty(current);
+    }
+
+    /**
+     * Sets all the given fields of the document with the given id in a single round
+     * trip. Without an expected version the document is created if it does not exist.
+     *
+     * @param expectedVersion the version the document must have, or null for any
+     * @return the replaced document, or empty if an expected version was given but no
+     * document has the id
+     * @throws OptimisticLockingFailureException (as an error signal) if the document
+     *                                           does not have the expected version
+     */
+    static <T> Mono<T> findAndReplace(ReactiveMongoOperations operations, String id, Map<String, Object> fields,
+                                      Long expectedVersion, Class<T> entityClass) {
+
+        Query query = query(where("id").is(id));
+        if (expectedVersion != null) {
+            query.addCriteria(versionIs(expectedVersion));
+        }
+
+        return operations.findAndModify(query, update(fields).inc(VERSION, 1),
+                options().returnNew(true).upsert(expectedVersion == null), entityClass)
+                .switchIfEmpty(Mono.defer(() -> operations.exists(query(where("id").is(id)), entityClass))
+                        .flatMap(exists -> exists ? Mono.error(conflict(entityClass, id)) : Mono.empty()));
+    }
+
+    /**
+     * Matches the document with the id only if at least one of the fields differs from
+     * its new value.
+     */
+    static Query differingQuery(String id, Map<String, Object> changes) {
+        Criteria[] differences = new Criteria[changes.size()];
+        int i = 0;
+
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            differences[i++] = where(change.getKey()).ne(change.getValue());
+        }
+
+        return query(where("id").is(id).orOperator(differences));
+    }
+
+    static Update update(Map<String, Object> changes) {
+        Update update = new Update();
+        changes.forEach(update::set);
+        return update;
+    }
+
+    /**
+     * Documents written before versioning have no version field, which counts as 0.
+     */
+    static Criteria versionIs(long expectedVersion) {
+        return expectedVersion == 0 ? where(VERSION).in(0L, null) : where(VERSION).is(expectedVersion);
+    }
+
+    private static <T> boolean hasVersion(T document, Long expectedVersion, Function<T, Long> versionOf) {
+        return expectedVersion == null
+                || expectedVersion == Optional.ofNullable(versionOf.apply(document)).orElse(0L).longValue();
+    }
+
+    private static OptimisticLockingFailureException conflict(Class<?> entityClass, String id) {
+        return new OptimisticLockingFailureException(String.format("%s with id of <%s> has been modified",
+                entityClass.getSimpleName(), id));
+    }
+}
@@ -0,0 +1,74 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Shared projected read logic. Only the requested fields leave the datastore, and they
+ * are read as raw documents, so no entity is instantiated for them.
+ */
+final class Projections {
+
+    private static final String ID = "id";
+
+    private Projections() {
+    }
+
+    /**
+     * Runs the query with a projection on the given properties.
+     *
+     * @return one map per document, holding exactly the requested properties in the
+     * requested order, with a null value where the document has none
+     */
+    static Flux<Map<String, Object>> find(ReactiveMongoOperations operations, Query query,
+                                          Collection<String> fields, Class<?> entityClass) {
+        Field projection = query.fields();
+        fields.forEach(field -> projection.include(storedName(field)));
+        if (!fields.contains(ID)) {
+            projection.exclude("_id");
+        }
+
+        return operations.find(query, Document.class, operations.getCollectionName(entityClass))
+                .map(document -> project(document, fields));
+    }
+
+    /**
+     * Matches a raw document by id; raw queries bypass the mapping of {@code id} to an
+     * {@code ObjectId}, so do it here.
+     */
+    static Query byId(String id) {
+        return query(where("_id").is(storedId(id)));
+    }
+
+    /**
+     * The value stored in {@code _id} for an id, as the template would map it.
+     */
+    static Object storedId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    private static Map<String, Object> project(Document document, Collection<String> fields) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+
+        for (String field : fields) {
+            Object value = document.get(storedName(field));
+            projected.put(field, value instanceof ObjectId ? ((ObjectId) value).toHexString() : value);
+        }
+        return projected;
+    }
+
+    private static String storedName(String field) {
+        return ID.equals(field) ? "_id" : field;
+    }
+}
@@ -0,0 +1,102 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface VendorRepositoryCustom {
+
+    /**
+     * Copies the non-null properties of {@code changes} onto the vendor with the given id.
+     *
+     * @param expectedVersion the version the vendor must have, or null for any
+     * @return the vendor after the patch, or empty if no vendor has the id; an
+     * {@link org.springframework.dao.OptimisticLockingFailureException} if the version differs
+     */
+    Mono<Vendor> patch(String id, Vendor changes, Long expectedVersion);
+
+    /**
+     * Replaces all properties of the vendor with the given id. Without an expected version
+     * the vendor is created if it does not exist.
+     *
+     * @param expectedVersion the version the vendor must have, or null for any
+     * @return the replaced vendor, or empty if an expected version was given and no vendor has
+     * the id; an {@link org.springframework.dao.OptimisticLockingFailureException} if the
+     * version differs
+     */
+    Mono<Vendor> replace(String id, Vendor vendor, Long expectedVersion);
+
+    /**
+     * Inserts the batch with one unordered bulk write.
+     *
+     * @return the number of inserted and failed documents
+     */
+    Mono<BulkInsertResult> insertBatch(List<Vendor> vendors);
+
+    /**
+     * Executes the upserts, patches and deletes with one unordered bulk write.
+     *
+     * @return one result per operation, in the order of the operations
+     */
+    Flux<BulkOperationResult> bulkWrite(List<BulkOperation<Vendor>> operations);
+
+    /**
+     * Reads up to {@code limit} vendors in id order, starting after the given id.
+     *
+     * @param after the id to seek past, or null to start at the beginning
+     */
+    Flux<Vendor> findPage(String after, int limit);
+
+    /**
+     * Streams the vendors in id order straight from the datastore cursor.
+     *
+     * @param after     the id to seek past, or null to start at the beginning
+     * @param batchSize the number of documents fetched per cursor round trip
+     */
+    Flux<Vendor> stream(String after, int batchSize);
+
+    /**
+     * Streams the vendors belonging to the category, in id order.
+     */
+    Flux<Vendor> findByCategoryId(String categoryId);
+
+    /**
+     * Finds vendors whose last or first name starts with {@code prefix}, ignoring case.
+     */
+    Flux<Vendor> searchByNamePrefix(String prefix, int limit);
+
+    /**
+     * Finds vendors whose names contain any of the words in {@code text}, best matches
+     * first where the datastore can rank them.
+     */
+    Flux<Vendor> searchByText(String text, int limit);
+
+    /**
+     * Reads only the given properties of every vendor, without mapping whole documents.
+     *
+     * @return one map of property name to value per vendor
+     */
+    Flux<Map<String, Object>> findAllProjected(Collection<String> fields);
+
+    /**
+     * Reads only the given properties of the vendor with the given id.
+     */
+    Mono<Map<String, Object>> findByIdProjected(String id, Collection<String> fields);
+
+    /**
+     * {@link #searchByNamePrefix} reading only the given properties.
+     */
+    Flux<Map<String, Object>> searchByNamePrefixProjected(String prefix, int limit, Collection<String> fields);
+
+    /**
+     * {@link #searchByText} reading only the given properties.
+     */
+    Flux<Map<String, Object>> searchByTextProjected(String text, int limit, Collection<String> fields);
+}
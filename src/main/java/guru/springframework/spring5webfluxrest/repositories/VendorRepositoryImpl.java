@@ -0,0 +1,162 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@AllArgsConstructor
+public class VendorRepositoryImpl implements VendorRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Override
+    public Mono<Vendor> patch(String id, Vendor changes, Long expectedVersion) {
+        return Patches.findAndPatch(mongoOperations, id, changesOf(changes), expectedVersion,
+                Vendor.class, Vendor::getVersion);
+    }
+
+    @Override
+    public Mono<Vendor> replace(String id, Vendor vendor, Long expectedVersion) {
+        return Patches.findAndReplace(mongoOperations, id, replacementOf(vendor), expectedVersion, Vendor.class);
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertBatch(List<Vendor> vendors) {
+        return BulkInserts.insertUnordered(mongoOperations, vendors, Vendor.class, VendorSearchKeys::addTo);
+    }
+
+    @Override
+    public Flux<BulkOperationResult> bulkWrite(List<BulkOperation<Vendor>> operations) {
+        return BulkWrites.writeUnordered(mongoOperations, operations, Vendor.class,
+                VendorRepositoryImpl::replacementOf, VendorRepositoryImpl::changesOf);
+    }
+
+    @Override
+    public Flux<Vendor> findPage(String after, int limit) {
+        return Cursors.page(mongoOperations, after, limit, Vendor.class);
+    }
+
+    @Override
+    public Flux<Vendor> stream(String after, int batchSize) {
+        return Cursors.stream(mongoOperations, after, batchSize, Vendor.class);
+    }
+
+    @Override
+    public Flux<Vendor> findByCategoryId(String categoryId) {
+        return mongoOperations.find(query(where("categoryIds").is(categoryId))
+                .with(Sort.by(Sort.Direction.ASC, "id")), Vendor.class);
+    }
+
+    @Override
+    public Flux<Vendor> searchByNamePrefix(String prefix, int limit) {
+        return MaxTimes.find(prefixQuery(prefix, limit), query -> mongoOperations.find(query, Vendor.class));
+    }
+
+    @Override
+    public Flux<Vendor> searchByText(String text, int limit) {
+        return MaxTimes.find(textQuery(text, limit), query -> mongoOperations.find(query, Vendor.class));
+    }
+
+    @Override
+    public Flux<Map<String, Object>> findAllProjected(Collection<String> fields) {
+        return Projections.find(mongoOperations, new Query(), fields, Vendor.class);
+    }
+
+    @Override
+    public Mono<Map<String, Object>> findByIdProjected(String id, Collection<String> fields) {
+        return MaxTimes.find(Projections.byId(id),
+                query -> Projections.find(mongoOperations, query, fields, Vendor.class)).next();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> searchByNamePrefixProjected(String prefix, int limit, Collection<String> fields) {
+        return MaxTimes.find(prefixQuery(prefix, limit),
+                query -> Projections.find(mongoOperations, query, fields, Vendor.class));
+    }
+
+    @Override
+    public Flux<Map<String, Object>> searchByTextProjected(String text, int limit, Collection<String> fields) {
+        return MaxTimes.find(textQuery(text, limit),
+                query -> Projections.find(mongoOperations, query, fields, Vendor.class));
+    }
+
+    /**
+     * A case-sensitive anchored regex on the lowercased names is answered from a tight
+     * range of each name index, like a string range query.
+     */
+    static Query prefixQuery(String prefix, int limit) {
+        Pattern pattern = Pattern.compile("^" + literal(VendorSearchKeys.lower(prefix)));
+
+        return query(new Criteria().orOperator(
+                where(VendorSearchKeys.LAST_NAME).regex(pattern),
+                where(VendorSearchKeys.FIRST_NAME).regex(pattern)))
+                .limit(limit);
+    }
+
+    /**
+     * Escapes every character that is not a letter or digit with a backslash, which
+     * Mongo still recognises as a plain prefix.
+     */
+    private static String literal(String text) {
+        StringBuilder literal = new StringBuilder(text.length() * 2);
+        for (char c : text.toCharArray()) {
+            if (!Character.isLetterOrDigit(c)) {
+                literal.append('\\');
+            }
+            literal.append(c);
+        }
+        return literal.toString();
+    }
+
+    static Query textQuery(String text, int limit) {
+        return TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(text))
+                .sortByScore()
+                .limit(limit);
+    }
+
+    static Map<String, Object> changesOf(Vendor vendor) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+
+        if (vendor.getFirstName() != null) {
+            changes.put("firstName", vendor.getFirstName());
+        }
+
+        if (vendor.getLastName() != null) {
+            changes.put("lastName", vendor.getLastName());
+        }
+
+        if (vendor.getCategoryIds() != null) {
+            changes.put("categoryIds", vendor.getCategoryIds());
+        }
+
+        return VendorSearchKeys.addTo(changes);
+    }
+
+    static Map<String, Object> replacementOf(Vendor vendor) {
+        // Every field is set, including nulls: a replacement clears what it omits
+        Map<String, Object> replacement = new LinkedHashMap<>();
+        replacement.put("firstName", vendor.getFirstName());
+        replacement.put("lastName", vendor.getLastName());
+        replacement.put("categoryIds", vendor.getCategoryIds());
+        return VendorSearchKeys.addTo(replacement);
+    }
+}
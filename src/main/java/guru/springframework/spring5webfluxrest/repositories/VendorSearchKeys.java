@@ -0,0 +1,93 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Keeps lowercased copies of the vendor names, which prefix search runs on. A
+ * case-sensitive anchored regex on them is answered from a tight index range, where a
+ * case-insensitive one on the names themselves walks every key of the index.
+ * <p>
+ * Template saves and inserts get the keys here, patches, replacements and bulk writes
+ * from {@link VendorRepositoryImpl}. Vendors stored before the keys existed are given
+ * them at startup.
+ */
+@Component
+@Profile("!inmemory")
+@AllArgsConstructor
+@Slf4j
+public class VendorSearchKeys extends AbstractMongoEventListener<Vendor> {
+
+    static final String FIRST_NAME = "firstNameLower";
+
+    static final String LAST_NAME = "lastNameLower";
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<Vendor> event) {
+        addTo(event.getDocument());
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void backfill() {
+        String collection = mongoOperations.getCollectionName(Vendor.class);
+        Query missing = query(new Criteria().orOperator(
+                where("firstName").ne(null).and(FIRST_NAME).exists(false),
+                where("lastName").ne(null).and(LAST_NAME).exists(false)));
+
+        long updated = mongoOperations.find(missing, Document.class, collection)
+                .flatMap(document -> {
+                    Update update = new Update();
+                    addTo(new Document("firstName", document.get("firstName"))
+                            .append("lastName", document.get("lastName")))
+                            .forEach(update::set);
+
+                    return mongoOperations.updateFirst(query(where("_id").is(document.get("_id"))),
+                            update, collection);
+                }, 4)
+                .count()
+                .block();
+
+        if (updated > 0) {
+            log.info(String.format("Added search keys to %d vendors", updated));
+        }
+    }
+
+    /**
+     * Adds the keys of the names among the fields; a null name clears its key.
+     *
+     * @return the fields
+     */
+    static Map<String, Object> addTo(Map<String, Object> fields) {
+        if (fields.containsKey("firstName")) {
+            fields.put(FIRST_NAME, lower((String) fields.get("firstName")));
+        }
+        if (fields.containsKey("lastName")) {
+            fields.put(LAST_NAME, lower((String) fields.get("lastName")));
+        }
+        return fields;
+    }
+
+    static String lower(String name) {
+        return name == null ? null : name.toLowerCase(Locale.ROOT);
+    }
+}
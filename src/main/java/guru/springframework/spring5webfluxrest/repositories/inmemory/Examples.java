@@ -0,0 +1,95 @@
+package guru.springframework.spring5webfluxrest.repositories.inmemory;
+
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.support.ExampleMatcherAccessor;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Query by example over documents held in memory, matching a probe the way a Mongo
+ * example query matches a flat document: each of the probe's fields that is not ignored
+ * (nor null, unless nulls are included) must equal the document's, or match it as the
+ * string matcher for its path says. Like Mongo, only documents of the probe's type
+ * match.
+ */
+final class Examples {
+
+    private Examples() {
+    }
+
+    static Predicate<Object> matcher(Example<?> example) {
+        Object probe = example.getProbe();
+        ExampleMatcher matcher = example.getMatcher();
+        ExampleMatcherAccessor accessor = new ExampleMatcherAccessor(matcher);
+        List<Predicate<Object>> conditions = new ArrayList<>();
+
+        ReflectionUtils.doWithFields(probe.getClass(), field -> {
+            String path = field.getName();
+            if (accessor.isIgnoredPath(path)) {
+                return;
+            }
+
+            ReflectionUtils.makeAccessible(field);
+            Object expected = accessor.getValueTransformerForPath(path)
+                    .apply(Optional.ofNullable(ReflectionUtils.getField(field, probe)))
+                    .orElse(null);
+
+            if (expected == null && accessor.getNullHandling() == ExampleMatcher.NullHandling.IGNORE) {
+                return;
+            }
+
+            ExampleMatcher.StringMatcher stringMatcher = accessor.getStringMatcherForPath(path);
+            boolean ignoreCase = accessor.isIgnoreCaseForPath(path);
+            conditions.add(document -> matches(value(field, document), expected, stringMatcher, ignoreCase));
+        }, field -> !Modifier.isStatic(field.getModifiers()));
+
+        Predicate<Object> all = document -> conditions.stream().allMatch(condition -> condition.test(document));
+        Predicate<Object> any = document -> conditions.isEmpty()
+                || conditions.stream().anyMatch(condition -> condition.test(document));
+        Predicate<Object> fields = matcher.isAllMatching() ? all : any;
+
+        return document -> example.getProbeType().isInstance(document) && fields.test(document);
+    }
+
+    private static Object value(Field field, Object document) {
+        return ReflectionUtils.getField(field, document);
+    }
+
+    private static boolean matches(Object actual, Object expected, ExampleMatcher.StringMatcher stringMatcher,
+                                   boolean ignoreCase) {
+        if (expected == null || actual == null) {
+            return expected == actual;
+        }
+        if (!(expected instanceof String) || !(actual instanceof String)) {
+            return expected.equals(actual);
+        }
+
+        if (stringMatcher == ExampleMatcher.StringMatcher.REGEX) {
+            return Pattern.compile((String) expected, ignoreCase ? Pattern.CASE_INSENSITIVE : 0)
+                    .matcher((String) actual).find();
+        }
+
+        String value = ignoreCase ? ((String) actual).toLowerCase(Locale.ROOT) : (String) actual;
+        String wanted = ignoreCase ? ((String) expected).toLowerCase(Locale.ROOT) : (String) expected;
+
+        switch (stringMatcher) {
+            case STARTING:
+                return value.startsWith(wanted);
+            case ENDING:
+                return value.endsWith(wanted);
+            case CONTAINING:
+                return value.contains(wanted);
+            default:
+                return value.equals(wanted);
+        }
+    }
+}
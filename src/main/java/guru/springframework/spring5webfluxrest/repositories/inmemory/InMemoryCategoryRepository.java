@@ -0,0 +1,66 @@
+package guru.springframework.spring5webfluxrest.repositories.inmemory;
+
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+@Repository
+@Profile("inmemory")
+public class InMemoryCategoryRepository extends InMemoryRepository<Category> implements CategoryRepository {
+
+    public InMemoryCategoryRepository() {
+        super(indexes());
+    }
+
+    private static Map<String, Function<Category, Collection<String>>> indexes() {
+        return Collections.singletonMap("description", category -> category.getDescription() == null
+                ? Collections.emptyList()
+                : Collections.singletonList(category.getDescription().toLowerCase()));
+    }
+
+    @Override
+    protected String getId(Category category) {
+        return category.getId();
+    }
+
+    @Override
+    protected void setId(Category category, String id) {
+        category.setId(id);
+    }
+
+    @Override
+    protected Long getVersion(Category category) {
+        return category.getVersion();
+    }
+
+    @Override
+    protected void setVersion(Category category, Long version) {
+        category.setVersion(version);
+    }
+
+    @Override
+    protected Category copy(Category category) {
+        return Category.builder()
+                .id(category.getId())
+                .version(category.getVersion())
+                .description(category.getDescription())
+                .build();
+    }
+
+    @Override
+    protected boolean merge(Category target, Category changes) {
+        if (changes.getDescription() != null &&
+                !Objects.equals(target.getDescription(), changes.getDescription())) {
+            target.setDescription(changes.getDescription());
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,509 @@
+package guru.springframework.spring5webfluxrest.repositories.inmemory;
+
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult.Status;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Reactive repository over concurrent in-process maps, for deployments and tests that
+ * must not depend on the network.
+ * <p>
+ * Documents are kept in a skip list ordered by id, so lookups, id-ordered paging and
+ * streaming never take a lock. Every write to one id is serialized on one of a fixed
+ * set of lock stripes, which keeps read-modify-write operations such as {@code patch}
+ * atomic without a global lock. Secondary indexes are ordered sets of
+ * {@code key + NUL + id} entries maintained under the same stripe lock. Documents are
+ * copied on the way in and out, so callers never share state with the store.
+ * <p>
+ * Versions follow the Mongo mapping of {@code @Version}: saving a document without a
+ * version inserts it at version 0, and saving one with a version only succeeds if it
+ * matches the stored version, which it then increments.
+ * <p>
+ * Query by example matches the probe's fields against every document, see
+ * {@link Examples}.
+ */
+public abstract class InMemoryRepository<T> implements ReactiveMongoRepository<T, String> {
+
+    private static final int STRIPES = 64;
+
+    private static final char SEPARATOR = '\u0000';
+
+    private final ConcurrentSkipListMap<String, T> documents = new ConcurrentSkipListMap<>();
+
+    private final Object[] locks = new Object[STRIPES];
+
+    private final Map<String, Index<T>> indexes;
+
+    protected InMemoryRepository(Map<String, Function<T, Collection<String>>> indexKeys) {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        Map<String, Index<T>> indexes = new HashMap<>();
+        indexKeys.forEach((name, keys) -> indexes.put(name, new Index<>(keys)));
+        this.indexes = indexes;
+    }
+
+    protected abstract String getId(T document);
+
+    protected abstract void setId(T document, String id);
+
+    protected abstract Long getVersion(T document);
+
+    protected abstract void setVersion(T document, Long version);
+
+    protected abstract T copy(T document);
+
+    /**
+     * Copies the non-null properties of {@code changes} onto {@code target}.
+     *
+     * @return whether any property of the target changed
+     */
+    protected abstract boolean merge(T target, T changes);
+
+    // Reads
+
+    @Override
+    public Mono<T> findById(String id) {
+        return Mono.fromSupplier(() -> copyOrNull(documents.get(id)));
+    }
+
+    @Override
+    public Mono<T> findById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        return Mono.fromSupplier(() -> documents.containsKey(id));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<T> findAll() {
+        return Flux.defer(() -> Flux.fromIterable(documents.values())).map(this::copy);
+    }
+
+    @Override
+    public Flux<T> findAll(Sort sort) {
+        return findAll().collectSortedList(comparator(sort)).flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public Flux<T> findAllById(Iterable<String> ids) {
+        return Flux.fromIterable(ids).flatMap(this::findById);
+    }
+
+    @Override
+    public Flux<T> findAllById(Publisher<String> ids) {
+        return Flux.from(ids).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(() -> (long) documents.size());
+    }
+
+    public Flux<T> findPage(String after, int limit) {
+        return stream(after, limit).take(limit);
+    }
+
+    /**
+     * Walks the documents in id order. The batch size only matters to remote stores.
+     */
+    public Flux<T> stream(String after, int batchSize) {
+        return Flux.defer(() -> Flux.fromIterable(
+                (after == null ? documents : documents.tailMap(after, false)).values()))
+                .map(this::copy);
+    }
+
+    public Flux<Map<String, Object>> findAllProjected(Collection<String> fields) {
+        return Flux.defer(() -> Flux.fromIterable(documents.values())).map(document -> project(document, fields));
+    }
+
+    public Mono<Map<String, Object>> findByIdProjected(String id, Collection<String> fields) {
+        return Mono.fromSupplier(() -> documents.get(id)).map(document -> project(document, fields));
+    }
+
+    /**
+     * Finds the documents with an index key equal to {@code key}.
+     */
+    protected Flux<T> findByIndex(String index, String key) {
+        return scan(index, key + SEPARATOR, key + SEPARATOR + Character.MAX_VALUE,
+                keys -> keys.contains(key));
+    }
+
+    /**
+     * Finds the documents with an index key starting with {@code prefix}, in key order.
+     */
+    protected Flux<T> findByIndexPrefix(String index, String prefix) {
+        return scan(index, prefix, prefix + Character.MAX_VALUE,
+                keys -> keys.stream().anyMatch(key -> key.startsWith(prefix)));
+    }
+
+    private Flux<T> scan(String indexName, String from, String to,
+                         Predicate<Collection<String>> stillMatches) {
+        Index<T> index = indexes.get(indexName);
+
+        return Flux.defer(() -> Flux.fromIterable(index.entries.subSet(from, true, to, false)))
+                .map(entry -> entry.substring(entry.indexOf(SEPARATOR) + 1))
+                .distinct()
+                .flatMap(id -> Mono.justOrEmpty(documents.get(id)))
+                // Index entries and documents are not updated atomically with respect to
+                // readers, so re-check the document against the key it was found by
+                .filter(document -> stillMatches.test(index.keys.apply(document)))
+                .map(this::copy);
+    }
+
+    // Writes
+
+    @Override
+    public <S extends T> Mono<S> save(S entity) {
+        if (getVersion(entity) == null) {
+            return insert(entity);
+        }
+
+        return Mono.fromSupplier(() -> {
+            String id = getId(entity) == null ? newId() : getId(entity);
+
+            synchronized (lock(id)) {
+                T current = documents.get(id);
+
+                if (current == null || !hasVersion(current, getVersion(entity))) {
+                    throw conflict(id);
+                }
+                setId(entity, id);
+                setVersion(entity, getVersion(entity) + 1);
+                write(id, copy(entity));
+            }
+            return entity;
+        });
+    }
+
+    @Override
+    public <S extends T> Flux<S> saveAll(Iterable<S> entities) {
+        return Flux.fromIterable(entities).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends T> Flux<S> saveAll(Publisher<S> entityStream) {
+        return Flux.from(entityStream).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends T> Mono<S> insert(S entity) {
+        return Mono.fromSupplier(() -> {
+            String id = getId(entity) == null ? newId() : getId(entity);
+
+            synchronized (lock(id)) {
+                if (documents.containsKey(id)) {
+                    throw new DuplicateKeyException(String.format("Document with id of <%s> already exists", id));
+                }
+                setId(entity, id);
+                setVersion(entity, 0L);
+                write(id, copy(entity));
+            }
+            return entity;
+        });
+    }
+
+    @Override
+    public <S extends T> Flux<S> insert(Iterable<S> entities) {
+        return Flux.fromIterable(entities).concatMap(this::insert);
+    }
+
+    @Override
+    public <S extends T> Flux<S> insert(Publisher<S> entities) {
+        return Flux.from(entities).concatMap(this::insert);
+    }
+
+    public Mono<BulkInsertResult> insertBatch(List<T> batch) {
+        // Unordered semantics: a failing document does not stop the rest of the batch
+        return Flux.fromIterable(batch)
+                .concatMap(document -> insert(document)
+                        .map(inserted -> BulkInsertResult.of(1, 0))
+                        .onErrorResume(DuplicateKeyException.class, e -> Mono.just(BulkInsertResult.of(0, 1))))
+                .reduce(BulkInsertResult.of(0, 0), BulkInsertResult::plus);
+    }
+
+    public Mono<T> patch(String id, T changes, Long expectedVersion) {
+        return Mono.fromSupplier(() -> {
+            synchronized (lock(id)) {
+                T current = documents.get(id);
+
+                if (current == null) {
+                    return null;
+                }
+                if (expectedVersion != null && !hasVersion(current, expectedVersion)) {
+                    throw conflict(id);
+                }
+
+                T patched = copy(current);
+                if (merge(patched, changes)) {
+                    setVersion(patched, versionOf(current) + 1);
+                    write(id, patched);
+                }
+                return copy(patched);
+            }
+        });
+    }
+
+    public Mono<T> replace(String id, T document, Long expectedVersion) {
+        return Mono.fromSupplier(() -> replaceNow(id, document, expectedVersion));
+    }
+
+    /**
+     * Applies the operations one at a time, in order. Like an unordered bulk write, a
+     * failing operation does not stop the rest.
+     */
+    public Flux<BulkOperationResult> bulkWrite(List<BulkOperation<T>> operations) {
+        return Flux.fromIterable(operations)
+                .concatMap(operation -> apply(operation)
+                        .onErrorResume(e -> Mono.just(BulkOperationResult.failed(operation, operation.getId(),
+                                Status.FAILED, e.getMessage()))));
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return Mono.fromRunnable(() -> remove(id));
+    }
+
+    public Mono<Void> deleteById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(T entity) {
+        return deleteById(getId(entity));
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends T> entities) {
+        return Flux.fromIterable(entities).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends T> entityStream) {
+        return Flux.from(entityStream).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Mono.fromRunnable(() -> documents.keySet().forEach(this::remove));
+    }
+
+    // Query by example, answered by scanning every document
+
+    @Override
+    public <S extends T> Mono<S> findOne(Example<S> example) {
+        return findAll(example)
+                .take(2)
+                .collectList()
+                .flatMap(found -> {
+                    if (found.size() > 1) {
+                        return Mono.error(new IncorrectResultSizeDataAccessException(1, found.size()));
+                    }
+                    return Mono.justOrEmpty(found.isEmpty() ? null : found.get(0));
+                });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends T> Flux<S> findAll(Example<S> example) {
+        return Flux.defer(() -> {
+            Predicate<Object> matches = Examples.matcher(example);
+
+            return Flux.fromIterable(documents.values())
+                    .filter(matches)
+                    .map(document -> (S) copy(document));
+        });
+    }
+
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example, Sort sort) {
+        return findAll(example).collectSortedList(InMemoryRepository.<S>comparator(sort))
+                .flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public <S extends T> Mono<Long> count(Example<S> example) {
+        return findAll(example).count();
+    }
+
+    @Override
+    public <S extends T> Mono<Boolean> exists(Example<S> example) {
+        return findAll(example).hasElements();
+    }
+
+    // Internals
+
+    private T replaceNow(String id, T document, Long expectedVersion) {
+        synchronized (lock(id)) {
+            T current = documents.get(id);
+
+            if (current == null && expectedVersion != null) {
+                return null;
+            }
+            if (current != null && expectedVersion != null && !hasVersion(current, expectedVersion)) {
+                throw conflict(id);
+            }
+
+            T replacement = copy(document);
+            setId(replacement, id);
+            // Matches an upsert incrementing a missing version
+            setVersion(replacement, current == null ? 1L : versionOf(current) + 1);
+            write(id, replacement);
+            return copy(replacement);
+        }
+    }
+
+    private Mono<BulkOperationResult> apply(BulkOperation<T> operation) {
+        String problem = operation.problem();
+
+        if (problem != null) {
+            return Mono.just(BulkOperationResult.failed(operation, operation.getId(), Status.INVALID, problem));
+        }
+
+        switch (operation.getAction()) {
+            case UPSERT:
+                String id = operation.getId() == null ? newId() : operation.getId();
+
+                return Mono.fromSupplier(() -> {
+                    // Reentrant, so the existence check and the replacement are one atomic step
+                    synchronized (lock(id)) {
+                        boolean exists = documents.containsKey(id);
+                        replaceNow(id, operation.getDocument(), null);
+                        return BulkOperationResult.of(operation, id, exists ? Status.UPDATED : Status.CREATED);
+                    }
+                });
+
+            case PATCH:
+                return patch(operation.getId(), operation.getDocument(), null)
+                        .map(patched -> BulkOperationResult.of(operation, operation.getId(), Status.UPDATED))
+                        .defaultIfEmpty(BulkOperationResult.of(operation, operation.getId(), Status.NOT_FOUND));
+
+            default:
+                return Mono.fromSupplier(() -> BulkOperationResult.of(operation, operation.getId(),
+                        remove(operation.getId()) != null ? Status.DELETED : Status.NOT_FOUND));
+        }
+    }
+
+    private void write(String id, T document) {
+        synchronized (lock(id)) {
+            T previous = documents.put(id, document);
+            indexes.values().forEach(index -> index.replace(id, previous, document));
+        }
+    }
+
+    private T remove(String id) {
+        synchronized (lock(id)) {
+            T previous = documents.remove(id);
+            indexes.values().forEach(index -> index.replace(id, previous, null));
+            return previous;
+        }
+    }
+
+    private Object lock(String id) {
+        return locks[(id.hashCode() & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    private boolean hasVersion(T document, long expectedVersion) {
+        return versionOf(document) == expectedVersion;
+    }
+
+    /**
+     * Documents stored before versioning count as version 0.
+     */
+    private long versionOf(T document) {
+        Long version = getVersion(document);
+        return version == null ? 0L : version;
+    }
+
+    private static OptimisticLockingFailureException conflict(String id) {
+        return new OptimisticLockingFailureException(String.format("Document with id of <%s> has been modified", id));
+    }
+
+    /**
+     * Reads the given properties straight off the stored document, without a copy.
+     */
+    protected Map<String, Object> project(T document, Collection<String> fields) {
+        DirectFieldAccessor accessor = new DirectFieldAccessor(document);
+        Map<String, Object> projected = new LinkedHashMap<>();
+
+        fields.forEach(field -> projected.put(field, accessor.getPropertyValue(field)));
+        return projected;
+    }
+
+    private T copyOrNull(T document) {
+        return document == null ? null : copy(document);
+    }
+
+    private static String newId() {
+        return new ObjectId().toHexString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = (a, b) -> 0;
+
+        for (Sort.Order order : sort) {
+            Function<T, Comparable<Object>> property = document ->
+                    (Comparable<Object>) new DirectFieldAccessor(document).getPropertyValue(order.getProperty());
+            Comparator<T> byProperty = Comparator.comparing(property,
+                    Comparator.nullsFirst(Comparator.<Comparable<Object>>naturalOrder()));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    private static final class Index<T> {
+
+        private final Function<T, Collection<String>> keys;
+
+        private final NavigableSet<String> entries = new ConcurrentSkipListSet<>();
+
+        private Index(Function<T, Collection<String>> keys) {
+            this.keys = keys;
+        }
+
+        private void replace(String id, T previous, T current) {
+            Collection<String> oldKeys = previous == null ? Collections.<String>emptyList() : keys.apply(previous);
+            Collection<String> newKeys = current == null ? Collections.<String>emptyList() : keys.apply(current);
+
+            // Add before removing so a concurrent reader never misses an unchanged key
+            newKeys.forEach(key -> entries.add(key + SEPARATOR + id));
+            oldKeys.stream()
+                    .filter(key -> !newKeys.contains(key))
+                    .forEach(key -> entries.remove(key + SEPARATOR + id));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package guru.springframework.spring5webfluxrest.repositories.inmemory;
+
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Repository
+@Profile("inmemory")
+public class InMemoryVendorRepository extends InMemoryRepository<Vendor> implements VendorRepository {
+
+    public InMemoryVendorRepository() {
+        super(indexes());
+    }
+
+    private static Map<String, Function<Vendor, Collection<String>>> indexes() {
+        Map<String, Function<Vendor, Collection<String>>> indexes = new HashMap<>();
+        indexes.put("lastName", vendor -> lowerCase(vendor.getLastName()));
+        indexes.put("firstName", vendor -> lowerCase(vendor.getFirstName()));
+        indexes.put("words", InMemoryVendorRepository::words);
+        indexes.put("categoryIds", vendor -> vendor.getCategoryIds() == null
+                ? Collections.emptyList()
+                : new HashSet<>(vendor.getCategoryIds()));
+        return indexes;
+    }
+
+    @Override
+    public Flux<Vendor> searchByNamePrefix(String prefix, int limit) {
+        String key = prefix.toLowerCase();
+
+        return Flux.concat(findByIndexPrefix("lastName", key), findByIndexPrefix("firstName", key))
+                .distinct(Vendor::getId)
+                .take(limit);
+    }
+
+    @Override
+    public Flux<Vendor> findByCategoryId(String categoryId) {
+        return findByIndex("categoryIds", categoryId);
+    }
+
+    /**
+     * Matches whole words, like a text index, but does not rank the results.
+     */
+    @Override
+    public Flux<Vendor> searchByText(String text, int limit) {
+        return Flux.fromIterable(splitWords(text))
+                .concatMap(word -> findByIndex("words", word))
+                .distinct(Vendor::getId)
+                .take(limit);
+    }
+
+    @Override
+    protected String getId(Vendor vendor) {
+        return vendor.getId();
+    }
+
+    @Override
+    protected void setId(Vendor vendor, String id) {
+        vendor.setId(id);
+    }
+
+    @Override
+    protected Long getVersion(Vendor vendor) {
+        return vendor.getVersion();
+    }
+
+    @Override
+    protected void setVersion(Vendor vendor, Long version) {
+        vendor.setVersion(version);
+    }
+
+    @Override
+    protected Vendor copy(Vendor vendor) {
+        return Vendor.builder()
+                .id(vendor.getId())
+                .version(vendor.getVersion())
+                .firstName(vendor.getFirstName())
+                .lastName(vendor.getLastName())
+                .categoryIds(vendor.getCategoryIds() == null ? null : new ArrayList<>(vendor.getCategoryIds()))
+                .build();
+    }
+
+    @Override
+    protected boolean merge(Vendor target, Vendor changes) {
+        boolean changed = false;
+
+        if (changes.getFirstName() != null &&
+                !Objects.equals(target.getFirstName(), changes.getFirstName())) {
+            target.setFirstName(changes.getFirstName());
+            changed = true;
+        }
+
+        if (changes.getLastName() != null &&
+                !Objects.equals(target.getLastName(), changes.getLastName())) {
+            target.setLastName(changes.getLastName());
+            changed = true;
+        }
+
+        if (changes.getCategoryIds() != null &&
+                !Objects.equals(target.getCategoryIds(), changes.getCategoryIds())) {
+            target.setCategoryIds(new ArrayList<>(changes.getCategoryIds()));
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    @Override
+    public Flux<Map<String, Object>> searchByNamePrefixProjected(String prefix, int limit, Collection<String> fields) {
+        return searchByNamePrefix(prefix, limit).map(vendor -> project(vendor, fields));
+    }
+
+    @Override
+    public Flux<Map<String, Object>> searchByTextProjected(String text, int limit, Collection<String> fields) {
+        return searchByText(text, limit).map(vendor -> project(vendor, fields));
+    }
+
+    private static Collection<String> words(Vendor vendor) {
+        Set<String> words = new HashSet<>(splitWords(vendor.getFirstName()));
+        words.addAll(splitWords(vendor.getLastName()));
+        return words;
+    }
+
+    private static List<String> splitWords(String value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(value.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static Collection<String> lowerCase(String value) {
+        return value == null ? Collections.emptyList() : Collections.singletonList(value.toLowerCase());
+    }
+}
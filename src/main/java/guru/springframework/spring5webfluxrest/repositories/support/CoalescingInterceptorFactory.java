@@ -0,0 +1,97 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Coalesces concurrent {@code findById} calls for the same id into a single datastore
+ * query (single-flight). The first caller's query is shared with everyone who asks for
+ * the same id while it is in flight; once it completes the next call queries again, so
+ * results are never older than the query that produced them.
+ * <p>
+ * Publishes {@code repository.coalescing.requests} (lookups), {@code
+ * repository.coalescing.queries} (lookups that reached the datastore) and their ratio
+ * {@code repository.coalescing.ratio}, the fraction of lookups served by another's query.
+ */
+@Component
+@Order(300)
+@ConditionalOnProperty(prefix = "api.coalescing", name = "enabled", havingValue = "true", matchIfMissing = true)
+@AllArgsConstructor
+public class CoalescingInterceptorFactory implements RepositoryInterceptorFactory {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public MethodInterceptor create(Class<?> repositoryInterface) {
+        String name = repositoryInterface.getSimpleName();
+
+        Counter requests = Counter.builder("repository.coalescing.requests")
+                .tag("repository", name)
+                .description("findById lookups")
+                .register(meterRegistry);
+        Counter queries = Counter.builder("repository.coalescing.queries")
+                .tag("repository", name)
+                .description("findById lookups that issued a datastore query")
+                .register(meterRegistry);
+        Gauge.builder("repository.coalescing.ratio", requests,
+                r -> r.count() == 0 ? 0 : 1 - queries.count() / r.count())
+                .tag("repository", name)
+                .description("Fraction of findById lookups that shared another lookup's query")
+                .register(meterRegistry);
+
+        return new CoalescingInterceptor(new ConcurrentHashMap<>(), requests, queries);
+    }
+
+    @AllArgsConstructor
+    static class CoalescingInterceptor implements MethodInterceptor {
+
+        private final ConcurrentMap<Object, Mono<Object>> inFlight;
+        private final Counter requests;
+        private final Counter queries;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object[] arguments = invocation.getArguments();
+
+            if (!"findById".equals(invocation.getMethod().getName())
+                    || arguments.length != 1 || arguments[0] instanceof Publisher) {
+                return invocation.proceed();
+            }
+
+            Object id = arguments[0];
+            Mono<Object> query = (Mono<Object>) invocation.proceed();
+
+            return Mono.defer(() -> {
+                requests.increment();
+                return inFlight.computeIfAbsent(id, key -> shared(key, query));
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private Mono<Object> shared(Object id, Mono<Object> query) {
+            Mono<Object>[] self = new Mono[1];
+
+            // cache() subscribes upstream once and replays the outcome to every subscriber;
+            // the entry is removed as soon as the query terminates so later calls re-query
+            self[0] = query
+                    .doOnSubscribe(subscription -> queries.increment())
+                    .doFinally(signal -> inFlight.remove(id, self[0]))
+                    .cache();
+
+            return self[0];
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import reactor.util.context.Context;
+
+import java.time.Duration;
+
+/**
+ * The deadline of a repository call, carried in the Reactor subscriber context so the
+ * query can pass the time left on to the datastore as its server-side max time.
+ */
+public final class Deadline {
+
+    private static final String CONTEXT_KEY = Deadline.class.getName();
+
+    private Deadline() {
+    }
+
+    /**
+     * @return the context with a deadline {@code timeout} from now, unless it already
+     * holds an earlier one
+     */
+    public static Context within(Context context, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        if (context.hasKey(CONTEXT_KEY) && context.<Long>get(CONTEXT_KEY) - deadline <= 0) {
+            return context;
+        }
+        return context.put(CONTEXT_KEY, deadline);
+    }
+
+    /**
+     * @return the milliseconds left to the deadline, at least 1, or 0 if there is none
+     */
+    public static long remainingMillis(Context context) {
+        if (!context.hasKey(CONTEXT_KEY)) {
+            return 0;
+        }
+        return Math.max(1, Duration.ofNanos(context.<Long>get(CONTEXT_KEY) - System.nanoTime()).toMillis());
+    }
+}
@@ -0,0 +1,85 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import lombok.AllArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Makes the in-memory repositories behave like a remote datastore: every call is
+ * delayed by {@code api.in-memory.latency}, a fraction of them by {@code slow-latency}
+ * instead, and a fraction fail with a {@link DataAccessResourceFailureException}. Each
+ * subscription draws anew, so a repeated (hedged) call may be fast where the first was
+ * slow. Innermost, so every other interceptor sees the injected behaviour.
+ */
+@Component
+@Order(450)
+@Profile("inmemory")
+@AllArgsConstructor
+public class LatencyInjectionInterceptorFactory implements RepositoryInterceptorFactory {
+
+    private final ApiProperties apiProperties;
+
+    @Override
+    public MethodInterceptor create(Class<?> repositoryInterface) {
+        return new LatencyInjectionInterceptor(apiProperties.getInMemory());
+    }
+
+    @AllArgsConstructor
+    static class LatencyInjectionInterceptor implements MethodInterceptor {
+
+        private final ApiProperties.InMemory settings;
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object result = invocation.proceed();
+
+            if (result instanceof Mono) {
+                return Mono.defer(() -> {
+                    Mono<Long> delay = delay();
+                    return delay == null ? (Mono<?>) result : delay.then((Mono<?>) result);
+                });
+            }
+
+            if (result instanceof Flux) {
+                return Flux.defer(() -> {
+                    Mono<Long> delay = delay();
+                    return delay == null ? (Flux<?>) result : delay.thenMany((Flux<?>) result);
+                });
+            }
+
+            return result;
+        }
+
+        /**
+         * @return the delay of one call, ending in the injected failure if it fails, or
+         * null if it is neither delayed nor failed
+         */
+        private Mono<Long> delay() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            Duration latency = random.nextDouble() < settings.getSlowFraction()
+                    ? settings.getSlowLatency()
+                    : settings.getLatency();
+            boolean fails = random.nextDouble() < settings.getFailureFraction();
+
+            if (latency.isZero() && !fails) {
+                return null;
+            }
+
+            Mono<Long> delay = Mono.delay(latency);
+            return fails
+                    ? delay.then(Mono.error(new DataAccessResourceFailureException("Injected datastore failure")))
+                    : delay;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.limiter.AdaptiveLimiter;
+import guru.springframework.spring5webfluxrest.limiter.ConcurrencyLimiters;
+import lombok.AllArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feeds the latency of every completed repository call to the read or write
+ * concurrency limiter. Being innermost, it sees only calls that reach the datastore,
+ * not cache hits or coalesced duplicates.
+ * <p>
+ * Only the time to the first element is sampled for a Flux, so long streams and large
+ * pages do not read as slow queries. A call cancelled before it answers, because it
+ * missed its deadline or lost to a hedge, is sampled at the time it was cancelled: a
+ * lower bound on its latency, but one that still shows a stalling datastore.
+ */
+@Component
+@Order(400)
+@ConditionalOnProperty(name = "api.limiter.enabled", havingValue = "true", matchIfMissing = true)
+@AllArgsConstructor
+public class LimiterSamplingInterceptorFactory implements RepositoryInterceptorFactory {
+
+    private final ConcurrencyLimiters limiters;
+
+    @Override
+    public MethodInterceptor create(Class<?> repositoryInterface) {
+        return new LimiterSamplingInterceptor(limiters);
+    }
+
+    @AllArgsConstructor
+    static class LimiterSamplingInterceptor implements MethodInterceptor {
+
+        private final ConcurrencyLimiters limiters;
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            AdaptiveLimiter limiter = limiters.budget(isRead(invocation.getMethod().getName()));
+            Object result = invocation.proceed();
+
+            if (result instanceof Mono) {
+                return Mono.defer(() -> {
+                    Sample sample = new Sample(limiter);
+                    return ((Mono<?>) result).doOnSuccess(value -> sample.record())
+                            .doOnError(e -> sample.record())
+                            .doOnCancel(sample::record);
+                });
+            }
+
+            if (result instanceof Flux) {
+                return Flux.defer(() -> {
+                    Sample sample = new Sample(limiter);
+                    return ((Flux<?>) result).doOnNext(value -> sample.record())
+                            .doOnComplete(sample::record)
+                            .doOnError(e -> sample.record())
+                            .doOnCancel(sample::record);
+                });
+            }
+
+            return result;
+        }
+
+        static boolean isRead(String method) {
+            return method.startsWith("find") || method.startsWith("count") || method.startsWith("exists")
+                    || method.startsWith("search") || method.equals("stream");
+        }
+    }
+
+    private static class Sample {
+
+        private final AdaptiveLimiter limiter;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        private Sample(AdaptiveLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        private void record() {
+            if (recorded.compareAndSet(false, true)) {
+                limiter.onSample(System.nanoTime() - start);
+            }
+        }
+    }
+}
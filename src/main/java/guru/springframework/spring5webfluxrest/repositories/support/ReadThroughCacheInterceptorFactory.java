@@ -0,0 +1,143 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a size and TTL bounded asynchronous cache in front of {@code findById}.
+ * <p>
+ * Concurrent misses for the same id share one pending load, and a load never blocks:
+ * the cache holds the {@link CompletableFuture} of the datastore read. Empty results
+ * and failures are not cached. Writes made through the repository replace the cached
+ * entry with the saved document, or invalidate it when the new state is not returned,
+ * as after a delete or a bulk write.
+ * Statistics are published as {@code cache.*} meters tagged with the repository name.
+ */
+@Component
+@Order(200)
+@ConditionalOnProperty(prefix = "api.cache", name = "enabled", havingValue = "true")
+@AllArgsConstructor
+public class ReadThroughCacheInterceptorFactory implements RepositoryInterceptorFactory {
+
+    private final ApiProperties apiProperties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public MethodInterceptor create(Class<?> repositoryInterface) {
+        ApiProperties.Cache settings = apiProperties.getCache();
+
+        AsyncLoadingCache<Object, Object> cache = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getTimeToLive().toNanos(), TimeUnit.NANOSECONDS)
+                .recordStats()
+                .buildAsync((key, executor) -> CompletableFuture.completedFuture(null));
+
+        String name = repositoryInterface.getSimpleName();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), name);
+        TimeGauge.builder("cache.load.latency", cache, TimeUnit.NANOSECONDS,
+                c -> c.synchronous().stats().averageLoadPenalty())
+                .tag("cache", name)
+                .description("Average time spent loading a missing entry from the datastore")
+                .register(meterRegistry);
+
+        return new ReadThroughCacheInterceptor(cache);
+    }
+
+    @AllArgsConstructor
+    static class ReadThroughCacheInterceptor implements MethodInterceptor {
+
+        private final AsyncLoadingCache<Object, Object> cache;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object[] arguments = invocation.getArguments();
+            Object first = arguments.length > 0 ? arguments[0] : null;
+
+            // Repository results are cold, so proceeding here does no I/O by itself
+            Object result = invocation.proceed();
+
+            switch (invocation.getMethod().getName()) {
+                case "findById":
+                    if (first instanceof Publisher) {
+                        return result;
+                    }
+                    Mono<Object> load = (Mono<Object>) result;
+                    return Mono.defer(() -> Mono.fromFuture(cache.get(first, (id, executor) -> load.toFuture())));
+
+                case "save":
+                case "insert":
+                case "patch":
+                case "replace":
+                    return refresh(result);
+
+                case "saveAll":
+                    return ((Flux<Object>) result).doOnNext(this::put);
+
+                case "deleteById":
+                    return ((Mono<Object>) result).doOnTerminate(() -> invalidate(first));
+
+                case "delete":
+                    return ((Mono<Object>) result).doOnTerminate(() -> invalidate(idOf(first)));
+
+                case "bulkWrite":
+                    // Results do not carry the new state, so drop whatever the operation touched
+                    return ((Flux<BulkOperationResult>) result).doOnNext(outcome -> invalidate(outcome.getId()));
+
+                case "deleteAll":
+                    return ((Mono<Object>) result).doOnTerminate(() -> cache.synchronous().invalidateAll());
+
+                default:
+                    return result;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object refresh(Object result) {
+            if (result instanceof Mono) {
+                return ((Mono<Object>) result).doOnNext(this::put);
+            }
+            if (result instanceof Flux) {
+                return ((Flux<Object>) result).doOnNext(this::put);
+            }
+            return result;
+        }
+
+        private void put(Object entity) {
+            Object id = idOf(entity);
+
+            if (id != null) {
+                cache.put(id, CompletableFuture.completedFuture(entity));
+            }
+        }
+
+        private void invalidate(Object id) {
+            if (id != null) {
+                cache.synchronous().invalidate(id);
+            }
+        }
+
+        private static Object idOf(Object entity) {
+            return entity == null || entity instanceof Publisher || entity instanceof Iterable ? null
+                    : PropertyAccessorFactory.forDirectFieldAccess(entity).getPropertyValue("id");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps every application repository bean in a proxy that applies the interceptors of
+ * all {@link RepositoryInterceptorFactory} beans. Works for the store generated
+ * repositories as well as hand written implementations.
+ */
+@Component
+public class RepositoryDecoratingPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+    private ListableBeanFactory beanFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = (ListableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof Repository)) {
+            return bean;
+        }
+
+        // Looked up lazily: factories may depend on beans that must not be created early
+        List<RepositoryInterceptorFactory> factories =
+                new ArrayList<>(beanFactory.getBeansOfType(RepositoryInterceptorFactory.class).values());
+        AnnotationAwareOrderComparator.sort(factories);
+
+        return decorate(bean, factories);
+    }
+
+    /**
+     * Returns a proxy applying the factories' interceptors to the repository, or the
+     * repository itself when there are none.
+     */
+    public static Object decorate(Object repository, List<RepositoryInterceptorFactory> factories) {
+        Class<?> repositoryInterface = repositoryInterface(repository);
+
+        if (factories.isEmpty() || repositoryInterface == null) {
+            return repository;
+        }
+
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTarget(repository);
+        proxyFactory.setInterfaces(repositoryInterface);
+        factories.forEach(factory -> proxyFactory.addAdvice(factory.create(repositoryInterface)));
+
+        return proxyFactory.getProxy(repository.getClass().getClassLoader());
+    }
+
+    private static Class<?> repositoryInterface(Object repository) {
+        for (Class<?> candidate : ClassUtils.getAllInterfacesForClassAsSet(repository.getClass())) {
+            if (Repository.class.isAssignableFrom(candidate)
+                    && !candidate.getName().startsWith("org.springframework.")) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,20 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import org.aopalliance.intercept.MethodInterceptor;
+
+/**
+ * Creates the interceptor that decorates calls to one repository. Factories are
+ * discovered as beans and applied in {@link org.springframework.core.annotation.Order}
+ * order, lowest (outermost) first, so an interceptor only sees calls that the
+ * interceptors before it let through.
+ *
+ * @see RepositoryDecoratingPostProcessor
+ */
+public interface RepositoryInterceptorFactory {
+
+    /**
+     * @param repositoryInterface the application repository interface being decorated,
+     *                            e.g. {@code VendorRepository}
+     */
+    MethodInterceptor create(Class<?> repositoryInterface);
+}
@@ -0,0 +1,93 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every repository call from subscription to termination.
+ * <p>
+ * Publishes {@code repository.invocations} (a timer with percentile histogram, tagged
+ * with repository, method and outcome) and {@code repository.errors} (tagged with the
+ * exception type). Being outermost, the timings include any caching or coalescing.
+ */
+@Component
+@Order(100)
+@AllArgsConstructor
+public class RepositoryMetricsInterceptorFactory implements RepositoryInterceptorFactory {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public MethodInterceptor create(Class<?> repositoryInterface) {
+        return new RepositoryMetricsInterceptor(meterRegistry, repositoryInterface.getSimpleName());
+    }
+
+    @AllArgsConstructor
+    static class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+        private final MeterRegistry meterRegistry;
+        private final String repository;
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            Object result = invocation.proceed();
+
+            if (result instanceof Mono) {
+                return Mono.defer(() -> {
+                    Timing timing = new Timing(method);
+                    return ((Mono<?>) result).doOnError(timing::failed).doFinally(timing::stop);
+                });
+            }
+
+            if (result instanceof Flux) {
+                return Flux.defer(() -> {
+                    Timing timing = new Timing(method);
+                    return ((Flux<?>) result).doOnError(timing::failed).doFinally(timing::stop);
+                });
+            }
+
+            return result;
+        }
+
+        private class Timing {
+
+            private final String method;
+            private final long start = System.nanoTime();
+
+            private Timing(String method) {
+                this.method = method;
+            }
+
+            private void failed(Throwable throwable) {
+                Counter.builder("repository.errors")
+                        .tags("repository", repository, "method", method,
+                                "exception", throwable.getClass().getSimpleName())
+                        .register(meterRegistry)
+                        .increment();
+            }
+
+            private void stop(SignalType signal) {
+                String outcome = signal == SignalType.ON_ERROR ? "error"
+                        : signal == SignalType.CANCEL ? "cancelled" : "success";
+
+                Timer.builder("repository.invocations")
+                        .tags("repository", repository, "method", method, "outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.exceptions.DatastoreTimeoutException;
+import guru.springframework.spring5webfluxrest.exceptions.DatastoreUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds how long a repository call may take, and stops calling a datastore that keeps
+ * failing.
+ * <ul>
+ * <li>Every call has a deadline, configurable per operation. A Reactor timeout enforces
+ * it (for a stream, on the first and each following document, counting only while the
+ * consumer is waiting for one), and it is put in the subscriber context as a
+ * {@link Deadline} so bounded queries pass the time left on as their server-side max
+ * time. A missed deadline is a {@link DatastoreTimeoutException}
+ * (504).</li>
+ * <li>Optionally, a {@code findById} still unanswered after the hedge delay is also sent
+ * to a secondary through {@link SecondaryReads} (or repeated, without one), and the
+ * first document to arrive wins.</li>
+ * <li>Timeouts and connection failures feed a {@link CircuitBreaker} per repository;
+ * while it is open calls fail at once with a {@link DatastoreUnavailableException}
+ * (503). Other errors, such as version conflicts, count as successful calls.</li>
+ * </ul>
+ * Ordered inside the cache, coalescing and write-behind, so only calls that go to the
+ * datastore are bounded and counted, once each.
+ * <p>
+ * Publishes {@code repository.deadline.exceeded} (per method), {@code
+ * repository.hedge.requests} and {@code repository.hedge.wins}, {@code
+ * repository.circuit.state} (0 closed, 1 open, 2 half open) and {@code
+ * repository.circuit.rejected}.
+ */
+@Component
+@Order(375)
+@ConditionalOnProperty(prefix = "api.resilience", name = "enabled", havingValue = "true", matchIfMissing = true)
+@AllArgsConstructor
+public class ResilienceInterceptorFactory implements RepositoryInterceptorFactory {
+
+    private final ApiProperties apiProperties;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<SecondaryReads> secondaryReads;
+
+    /**
+     * One per repository, shared by every interceptor made for it.
+     */
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    @Override
+    public MethodInterceptor create(Class<?> repositoryInterface) {
+        String name = repositoryInterface.getSimpleName();
+        CircuitBreaker breaker = breakers.computeIfAbsent(name, this::breaker);
+
+        Class<?>[] types = GenericTypeResolver.resolveTypeArguments(repositoryInterface, ReactiveCrudRepository.class);
+
+        return new ResilienceInterceptor(name, types == null ? null : types[0], breaker);
+    }
+
+    private CircuitBreaker breaker(String repository) {
+        ApiProperties.Breaker settings = apiProperties.getResilience().getBreaker();
+
+        CircuitBreaker breaker = new CircuitBreaker(settings.getWindowSize(), settings.getMinimumCalls(),
+                settings.getFailureRateThreshold(), settings.getOpenDuration());
+
+        Gauge.builder("repository.circuit.state", breaker, b -> b.getState().ordinal())
+                .tag("repository", repository)
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half open")
+                .register(meterRegistry);
+
+        return breaker;
+    }
+
+    class ResilienceInterceptor implements MethodInterceptor {
+
+        private final String repository;
+        private final Class<?> entityClass;
+        private final CircuitBreaker breaker;
+        private final Counter rejected;
+        private final Counter hedges;
+        private final Counter hedgeWins;
+
+        private ResilienceInterceptor(String repository, Class<?> entityClass, CircuitBreaker breaker) {
+            this.repository = repository;
+            this.entityClass = entityClass;
+            this.breaker = breaker;
+            this.rejected = Counter.builder("repository.circuit.rejected")
+                    .tag("repository", repository)
+                    .description("Calls refused while the circuit was open")
+                    .register(meterRegistry);
+            this.hedges = Counter.builder("repository.hedge.requests")
+                    .tag("repository", repository)
+                    .description("findById calls also sent to a secondary")
+                    .register(meterRegistry);
+            this.hedgeWins = Counter.builder("repository.hedge.wins")
+                    .tag("repository", repository)
+                    .description("Hedged findById calls answered by the secondary first")
+                    .register(meterRegistry);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            Object result = invocation.proceed();
+
+            if (!(result instanceof Mono) && !(result instanceof Flux)) {
+                return result;
+            }
+
+            ApiProperties.Resilience settings = apiProperties.getResilience();
+            Duration deadline = settings.deadlineFor(repository, method,
+                    LimiterSamplingInterceptorFactory.LimiterSamplingInterceptor.isRead(method));
+
+            if (result instanceof Mono) {
+                Mono<Object> call = (Mono<Object>) result;
+                Object[] arguments = invocation.getArguments();
+
+                if (settings.getHedge().isEnabled() && "findById".equals(method)
+                        && arguments.length == 1 && !(arguments[0] instanceof Publisher)) {
+                    call = hedged(call, arguments[0], settings.getHedge().getDelay());
+                }
+
+                Mono<Object> bounded = call;
+                return Mono.defer(() -> {
+                    if (!breaker.tryAcquire()) {
+                        rejected.increment();
+                        return Mono.error(new DatastoreUnavailableException(repository));
+                    }
+                    Outcome outcome = new Outcome();
+
+                    return bounded.timeout(deadline)
+                            .subscriberContext(context -> Deadline.within(context, deadline))
+                            .doOnSuccess(value -> outcome.success())
+                            .doOnError(outcome::error)
+                            .doOnCancel(outcome::cancel)
+                            .onErrorMap(ResilienceInterceptorFactory::isTimeout,
+                                    e -> timedOut(method, deadline, e));
+                });
+            }
+
+            Flux<Object> call = (Flux<Object>) result;
+            return Flux.defer(() -> {
+                if (!breaker.tryAcquire()) {
+                    rejected.increment();
+                    return Flux.error(new DatastoreUnavailableException(repository));
+                }
+                Outcome outcome = new Outcome();
+                Demand demand = new Demand();
+
+                // A stream is healthy once it delivers; how long it then runs is up to its consumer
+                return call.doOnNext(value -> demand.delivered())
+                        .timeout(demand.timeout(deadline), value -> demand.timeout(deadline))
+                        .doOnRequest(demand::requested)
+                        .subscriberContext(context -> Deadline.within(context, deadline))
+                        .doOnNext(value -> outcome.success())
+                        .doOnComplete(outcome::success)
+                        .doOnError(outcome::error)
+                        .doOnCancel(outcome::cancel)
+                        .onErrorMap(ResilienceInterceptorFactory::isTimeout,
+                                e -> timedOut(method, deadline, e));
+            });
+        }
+
+        /**
+         * A secondary that does not have the document (yet) or fails never wins; the
+         * primary's answer is awaited instead.
+         */
+        @SuppressWarnings("unchecked")
+        private Mono<Object> hedged(Mono<Object> primary, Object id, Duration delay) {
+            SecondaryReads secondary = secondaryReads.getIfAvailable();
+            Mono<Object> hedge = secondary != null && entityClass != null
+                    ? (Mono<Object>) secondary.findById(id, entityClass)
+                    : primary;
+
+            return Mono.first(primary, Mono.delay(delay)
+                    .doOnNext(tick -> hedges.increment())
+                    .then(hedge)
+                    .doOnNext(value -> hedgeWins.increment())
+                    .onErrorResume(e -> Mono.never())
+                    .switchIfEmpty(Mono.never()));
+        }
+
+        private DatastoreTimeoutException timedOut(String method, Duration deadline, Throwable cause) {
+            meterRegistry.counter("repository.deadline.exceeded", "repository", repository, "method", method)
+                    .increment();
+            return new DatastoreTimeoutException(repository + "." + method, deadline, cause);
+        }
+
+        /**
+         * Reports a call's outcome to the breaker once.
+         */
+        private class Outcome {
+
+            private final AtomicBoolean reported = new AtomicBoolean();
+
+            private void success() {
+                if (reported.compareAndSet(false, true)) {
+                    breaker.onSuccess();
+                }
+            }
+
+            private void error(Throwable e) {
+                if (reported.compareAndSet(false, true)) {
+                    if (isDatastoreFailure(e)) {
+                        breaker.onFailure();
+                    } else {
+                        breaker.onSuccess();
+                    }
+                }
+            }
+
+            private void cancel() {
+                if (reported.compareAndSet(false, true)) {
+                    breaker.onCancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * The documents a stream's consumer has asked for but not yet received. The deadline
+     * only runs while some are outstanding, so a consumer that stops requesting, such as
+     * a slow client, pauses it instead of failing the stream.
+     */
+    private static class Demand {
+
+        private final AtomicLong outstanding = new AtomicLong();
+
+        private final DirectProcessor<Long> requests = DirectProcessor.create();
+
+        private void requested(long n) {
+            outstanding.accumulateAndGet(n, Operators::addCap);
+            requests.onNext(n);
+        }
+
+        private void delivered() {
+            outstanding.getAndUpdate(n -> n == Long.MAX_VALUE ? n : n - 1);
+        }
+
+        /**
+         * @return elapses the deadline after documents are next outstanding
+         */
+        private Mono<Long> timeout(Duration deadline) {
+            // Listens for requests before looking, so none is missed in between
+            Mono<Long> waiting = Mono.defer(() -> outstanding.get() > 0 ? Mono.just(0L) : Mono.never());
+
+            return Mono.first(requests.next(), waiting).then(Mono.delay(deadline));
+        }
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        return e instanceof TimeoutException || causedBy(e, MongoExecutionTimeoutException.class);
+    }
+
+    private static boolean isDatastoreFailure(Throwable e) {
+        return isTimeout(e)
+                || e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || causedBy(e, MongoSocketException.class)
+                || causedBy(e, MongoTimeoutException.class);
+    }
+
+    private static boolean causedBy(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
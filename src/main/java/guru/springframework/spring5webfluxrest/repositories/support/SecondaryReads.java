@@ -0,0 +1,12 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads a document from a replica other than the one repositories read from, for
+ * hedged reads. Without one, a hedge repeats the read.
+ */
+public interface SecondaryReads {
+
+    <T> Mono<T> findById(Object id, Class<T> entityClass);
+}
@@ -0,0 +1,283 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Scheduler;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Write-behind buffer of one repository, see {@link WriteCoalescingInterceptorFactory}.
+ * <p>
+ * Writes to the same id within a window merge into one pending operation, field by
+ * field with the last writer winning: a replacement sets every field, a patch its
+ * non-null ones. A flush sends all pending operations as one bulk write, reads the
+ * written documents back with one {@code findAllById}, and completes every merged
+ * write with its document. Only one flush runs at a time, so writes to an id reach
+ * the datastore in the order they were made.
+ */
+class WriteCoalescer {
+
+    private final Function<List<BulkOperation<Object>>, Flux<BulkOperationResult>> bulkWrite;
+
+    private final Function<Set<String>, Flux<Object>> findAllById;
+
+    private final Duration window;
+
+    private final int maxBatchSize;
+
+    private final Scheduler scheduler;
+
+    private final Counter writes;
+
+    private final Counter documents;
+
+    private final Timer flushes;
+
+    private final MonoProcessor<Void> drained = MonoProcessor.create();
+
+    private Map<String, Pending> pending = new LinkedHashMap<>();
+
+    private Disposable scheduledFlush;
+
+    private boolean flushing;
+
+    private boolean closed;
+
+    WriteCoalescer(Function<List<BulkOperation<Object>>, Flux<BulkOperationResult>> bulkWrite,
+                   Function<Set<String>, Flux<Object>> findAllById, Duration window, int maxBatchSize,
+                   Scheduler scheduler, Counter writes, Counter documents, Timer flushes) {
+        this.bulkWrite = bulkWrite;
+        this.findAllById = findAllById;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+        this.writes = writes;
+        this.documents = documents;
+        this.flushes = flushes;
+    }
+
+    /**
+     * @param replacement whether the document replaces every field, or only patches its
+     *                    non-null ones
+     * @param direct      the write itself, made instead once the buffer is closed
+     * @return the document as written by the flush, or empty if a patch found no document
+     */
+    Mono<Object> write(String id, Object document, boolean replacement, Mono<Object> direct) {
+        return Mono.defer(() -> {
+            MonoProcessor<Object> acknowledgement = MonoProcessor.create();
+
+            synchronized (this) {
+                if (closed) {
+                    return direct;
+                }
+
+                pending.computeIfAbsent(id, key -> new Pending()).merge(document, replacement, acknowledgement);
+                writes.increment();
+                scheduleFlush(pending.size() >= maxBatchSize ? Duration.ZERO : window);
+            }
+            return acknowledgement;
+        });
+    }
+
+    /**
+     * Stops buffering and flushes what is pending.
+     *
+     * @return completes once every buffered write has been flushed
+     */
+    Mono<Void> close() {
+        synchronized (this) {
+            closed = true;
+
+            if (pending.isEmpty() && !flushing) {
+                drained.onComplete();
+            } else {
+                scheduleFlush(Duration.ZERO);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * While a flush runs nothing is scheduled; it schedules the next one as it completes.
+     */
+    private void scheduleFlush(Duration delay) {
+        if (flushing || (scheduledFlush != null && !delay.isZero())) {
+            return;
+        }
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+        }
+        scheduledFlush = scheduler.schedule(this::flush, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void flush() {
+        Map<String, Pending> batch;
+
+        synchronized (this) {
+            scheduledFlush = null;
+            if (flushing || pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            flushing = true;
+        }
+
+        long start = System.nanoTime();
+
+        write(batch)
+                .onErrorResume(e -> {
+                    batch.values().forEach(entry -> entry.fail(e));
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    flushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    documents.increment(batch.size());
+
+                    synchronized (this) {
+                        flushing = false;
+
+                        if (!pending.isEmpty()) {
+                            scheduleFlush(closed || pending.size() >= maxBatchSize ? Duration.ZERO : window);
+                        } else if (closed) {
+                            drained.onComplete();
+                        }
+                    }
+                })
+                .subscribe();
+    }
+
+    private Mono<Void> write(Map<String, Pending> batch) {
+        List<String> ids = new ArrayList<>(batch.keySet());
+        List<BulkOperation<Object>> operations = new ArrayList<>(ids.size());
+        ids.forEach(id -> operations.add(batch.get(id).operation(id)));
+
+        return bulkWrite.apply(operations)
+                .collectList()
+                .flatMap(results -> {
+                    Set<String> written = new LinkedHashSet<>();
+                    results.forEach(result -> {
+                        if (result.getStatus() == BulkOperationResult.Status.CREATED
+                                || result.getStatus() == BulkOperationResult.Status.UPDATED) {
+                            written.add(result.getId());
+                        }
+                    });
+
+                    Mono<Map<Object, Object>> found = written.isEmpty()
+                            ? Mono.just(Collections.emptyMap())
+                            : findAllById.apply(written).collectMap(WriteCoalescer::idOf);
+
+                    // Results come in the order of the operations
+                    return found.doOnNext(documents -> {
+                        for (int i = 0; i < results.size(); i++) {
+                            batch.get(ids.get(i)).complete(results.get(i), documents);
+                        }
+                    });
+                })
+                .then();
+    }
+
+    private static Object idOf(Object document) {
+        return PropertyAccessorFactory.forDirectFieldAccess(document).getPropertyValue("id");
+    }
+
+    /**
+     * The merged writes to one id, and who waits for them.
+     */
+    private static final class Pending {
+
+        private final List<MonoProcessor<Object>> acknowledgements = new ArrayList<>();
+
+        private Object merged;
+
+        private boolean replacement;
+
+        private void merge(Object document, boolean replaces, MonoProcessor<Object> acknowledgement) {
+            if (merged == null || replaces) {
+                merged = BeanUtils.instantiateClass(document.getClass());
+                copyFields(document, merged, replaces);
+                replacement |= replaces;
+            } else {
+                copyFields(document, merged, false);
+            }
+            acknowledgements.add(acknowledgement);
+        }
+
+        private BulkOperation<Object> operation(String id) {
+            return replacement ? BulkOperation.upsert(id, merged) : BulkOperation.patch(id, merged);
+        }
+
+        private void complete(BulkOperationResult result, Map<Object, Object> documents) {
+            switch (result.getStatus()) {
+                case CREATED:
+                case UPDATED:
+                    // Deleted again before it was read back: reported like a patch that found nothing
+                    Object document = documents.get(result.getId());
+                    acknowledgements.forEach(acknowledgement -> {
+                        if (document != null) {
+                            acknowledgement.onNext(document);
+                        } else {
+                            acknowledgement.onComplete();
+                        }
+                    });
+                    break;
+
+                case NOT_FOUND:
+                    acknowledgements.forEach(MonoProcessor::onComplete);
+                    break;
+
+                default:
+                    fail(new DataIntegrityViolationException(result.getError()));
+            }
+        }
+
+        private void fail(Throwable error) {
+            acknowledgements.forEach(acknowledgement -> acknowledgement.onError(error));
+        }
+
+        /**
+         * Copies the document's own fields, all of them or only the non-null ones; the id
+         * and version belong to the operation, not the document.
+         */
+        private static void copyFields(Object from, Object to, boolean all) {
+            ReflectionUtils.doWithFields(from.getClass(), field -> {
+                ReflectionUtils.makeAccessible(field);
+                Object value = field.get(from);
+
+                if (all || value != null) {
+                    field.set(to, value);
+                }
+            }, Pending::isDocumentField);
+        }
+
+        private static boolean isDocumentField(Field field) {
+            return !Modifier.isStatic(field.getModifiers())
+                    && !field.isAnnotationPresent(Id.class)
+                    && !field.isAnnotationPresent(Version.class);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Write-behind for unconditional {@code replace} and {@code patch} calls: writes to the
+ * same document within {@code api.write-behind.window} are merged and flushed as a
+ * single bulk write, and every caller is answered with the merged document once the
+ * bulk write is acknowledged. Meant for clients that update a few hot documents many
+ * times a second; each write waits up to one window longer, and writes to different
+ * documents in the same window share one round trip.
+ * <p>
+ * Conditional writes (with an expected version) go straight through. Inside the cache,
+ * which sees the merged document like any other write result, and outside the
+ * resilience and limiter sampling, so the time a write waits for its flush is not taken
+ * for datastore latency. Flushes go through those inner interceptors themselves, so a
+ * stalled flush meets the write deadline and the circuit breaker like any other call.
+ * On shutdown the buffers are closed and drained, for up to {@code drain-timeout}.
+ * <p>
+ * Publishes {@code repository.writebehind.writes} (buffered writes), {@code
+ * repository.writebehind.documents} (documents flushed), their ratio {@code
+ * repository.writebehind.ratio}, the fraction of writes merged into another, and the
+ * {@code repository.writebehind.flush} timer.
+ */
+@Component
+@Order(350)
+@ConditionalOnProperty(prefix = "api.write-behind", name = "enabled", havingValue = "true")
+@AllArgsConstructor
+@Slf4j
+public class WriteCoalescingInterceptorFactory implements RepositoryInterceptorFactory {
+
+    private final ApiProperties apiProperties;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<List<RepositoryInterceptorFactory>> factories;
+
+    private final List<WriteCoalescingInterceptor> interceptors = new CopyOnWriteArrayList<>();
+
+    @Override
+    public MethodInterceptor create(Class<?> repositoryInterface) {
+        Method bulkWrite = ReflectionUtils.findMethod(repositoryInterface, "bulkWrite", List.class);
+        Method findAllById = ReflectionUtils.findMethod(repositoryInterface, "findAllById", Iterable.class);
+
+        if (bulkWrite == null || findAllById == null) {
+            return MethodInvocation::proceed;
+        }
+
+        String name = repositoryInterface.getSimpleName();
+
+        Counter writes = Counter.builder("repository.writebehind.writes")
+                .tag("repository", name)
+                .description("Writes buffered for write-behind")
+                .register(meterRegistry);
+        Counter documents = Counter.builder("repository.writebehind.documents")
+                .tag("repository", name)
+                .description("Documents written by write-behind flushes")
+                .register(meterRegistry);
+        Gauge.builder("repository.writebehind.ratio", writes,
+                w -> w.count() == 0 ? 0 : Math.max(0, 1 - documents.count() / w.count()))
+                .tag("repository", name)
+                .description("Fraction of buffered writes merged into another write")
+                .register(meterRegistry);
+        Timer flushes = Timer.builder("repository.writebehind.flush")
+                .tag("repository", name)
+                .description("Time to bulk write a flush and read its documents back")
+                .register(meterRegistry);
+
+        WriteCoalescingInterceptor interceptor = new WriteCoalescingInterceptor(
+                bulkWrite, findAllById, writes, documents, flushes);
+        interceptors.add(interceptor);
+        return interceptor;
+    }
+
+    /**
+     * Writes arriving while draining go straight through.
+     */
+    @PreDestroy
+    public void drain() {
+        interceptors.forEach(interceptor -> {
+            try {
+                interceptor.close().block(apiProperties.getWriteBehind().getDrainTimeout());
+            } catch (RuntimeException e) {
+                log.warn("Write-behind buffer not drained", e);
+            }
+        });
+    }
+
+    class WriteCoalescingInterceptor implements MethodInterceptor {
+
+        private final Method bulkWrite;
+        private final Method findAllById;
+        private final Counter writes;
+        private final Counter documents;
+        private final Timer flushes;
+
+        private WriteCoalescer coalescer;
+
+        private boolean closed;
+
+        private WriteCoalescingInterceptor(Method bulkWrite, Method findAllById,
+                                           Counter writes, Counter documents, Timer flushes) {
+            this.bulkWrite = bulkWrite;
+            this.findAllById = findAllById;
+            this.writes = writes;
+            this.documents = documents;
+            this.flushes = flushes;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            Object[] arguments = invocation.getArguments();
+
+            if (!("replace".equals(method) || "patch".equals(method))
+                    || arguments.length != 3 || arguments[2] != null || !(arguments[0] instanceof String)) {
+                return invocation.proceed();
+            }
+
+            // The call is cold; it is only made if the buffer is closed by the time it is subscribed
+            Mono<Object> direct = (Mono<Object>) invocation.proceed();
+
+            return coalescer(invocation.getThis())
+                    .write((String) arguments[0], arguments[1], "replace".equals(method), direct);
+        }
+
+        /**
+         * Flushes reach the repository through the interceptors ordered after this one.
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized WriteCoalescer coalescer(Object target) {
+            if (coalescer == null) {
+                ApiProperties.WriteBehind settings = apiProperties.getWriteBehind();
+                Object repository = RepositoryDecoratingPostProcessor.decorate(target, innerFactories());
+
+                coalescer = new WriteCoalescer(
+                        operations -> (Flux<BulkOperationResult>) ReflectionUtils.invokeMethod(
+                                bulkWrite, repository, operations),
+                        ids -> (Flux<Object>) ReflectionUtils.invokeMethod(findAllById, repository, ids),
+                        settings.getWindow(), settings.getMaxBatchSize(), Schedulers.parallel(),
+                        writes, documents, flushes);
+
+                if (closed) {
+                    coalescer.close();
+                }
+            }
+            return coalescer;
+        }
+
+        private List<RepositoryInterceptorFactory> innerFactories() {
+            List<RepositoryInterceptorFactory> all = factories.getIfAvailable();
+            List<RepositoryInterceptorFactory> inner = new ArrayList<>();
+
+            if (all != null) {
+                all.stream()
+                        .filter(factory -> AnnotationAwareOrderComparator.INSTANCE
+                                .compare(factory, WriteCoalescingInterceptorFactory.this) > 0)
+                        .forEach(inner::add);
+            }
+            AnnotationAwareOrderComparator.sort(inner);
+            return inner;
+        }
+
+        private synchronized Mono<Void> close() {
+            closed = true;
+            return coalescer == null ? Mono.empty() : coalescer.close();
+        }
+    }
+}
@@ -3,10 +3,13 @@ package guru.springframework.spring5webfluxrest;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
+// Start an embedded Mongo rather than reaching for the remote one
+@TestPropertySource(properties = {"spring.data.mongodb.host=localhost", "spring.data.mongodb.port=0"})
 public class Spring5WebfluxRestApplicationTests {
 
 	@Test
@@ -0,0 +1,47 @@
+package guru.springframework.spring5webfluxrest.blocking;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class BlockingCallDetectorTest {
+
+    @BeforeClass
+    public static void detectBlockingCalls() {
+        BlockingCallDetector.install(BlockingCallDetector.FAIL);
+    }
+
+    @Test
+    public void failsBlockingCallOnParallelWorker() {
+        StepVerifier.create(Mono.fromCallable(BlockingCallDetectorTest::sleep).subscribeOn(Schedulers.parallel()))
+                .expectError(BlockingOperationError.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void allowsBlockingCallOnElasticWorker() {
+        StepVerifier.create(Mono.fromCallable(BlockingCallDetectorTest::sleep).subscribeOn(Schedulers.elastic()))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    public void recognisesNonBlockingThreads() {
+        assertTrue(BlockingCallDetector.isNonBlocking(new Thread("reactor-http-nio-3")));
+        assertTrue(BlockingCallDetector.isNonBlocking(new Thread("parallel-1")));
+        assertFalse(BlockingCallDetector.isNonBlocking(new Thread("blocking-1")));
+        assertFalse(BlockingCallDetector.isNonBlocking(new Thread("main")));
+    }
+
+    private static boolean sleep() throws InterruptedException {
+        Thread.sleep(1);
+        return true;
+    }
+}
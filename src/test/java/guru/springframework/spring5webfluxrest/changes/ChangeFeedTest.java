@@ -0,0 +1,64 @@
+package guru.springframework.spring5webfluxrest.changes;
+
+import guru.springframework.spring5webfluxrest.domain.ChangeEvent;
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class ChangeFeedTest {
+
+    @Test
+    public void resumesAfterTokenThenGoesLive() {
+        ChangeFeed<String> feed = new ChangeFeed<>(10, 10);
+        feed.inserted("1", "one");
+        String token = feed.subscribe("unknown").blockFirst().getToken();
+        feed.updated("1", "uno");
+        feed.deleted("2");
+
+        StepVerifier.create(feed.subscribe(token).take(3))
+                .assertNext(event -> assertEquals(ChangeEvent.Type.UPDATE, event.getType()))
+                .assertNext(event -> assertEquals(ChangeEvent.Type.DELETE, event.getType()))
+                .then(() -> feed.inserted("3", "three"))
+                .assertNext(event -> assertEquals("3", event.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void resetsTokensOutsideTheReplayWindow() {
+        ChangeFeed<String> feed = new ChangeFeed<>(2, 10);
+        feed.inserted("1", "one");
+        String first = feed.subscribe("unknown").blockFirst().getToken();
+
+        feed.inserted("2", "two");
+        feed.inserted("3", "three");
+        feed.inserted("4", "four");
+
+        StepVerifier.create(feed.subscribe(first).take(1))
+                .assertNext(event -> assertEquals(ChangeEvent.Type.RESET, event.getType()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void dropsOldestEventsOfSlowSubscriber() {
+        ChangeFeed<String> feed = new ChangeFeed<>(100, 2);
+
+        StepVerifier.create(feed.subscribe(null), 0)
+                .then(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        feed.inserted(String.valueOf(i), "document");
+                    }
+                })
+                .thenAwait(Duration.ofMillis(100))
+                .thenRequest(1)
+                .assertNext(event -> assertNotNull(event.getId()))
+                .thenCancel()
+                .verify();
+
+        assertTrue(feed.getDropped() > 0);
+        assertEquals(50, feed.getPublished());
+        assertEquals(0, feed.getSubscriberCount());
+    }
+}
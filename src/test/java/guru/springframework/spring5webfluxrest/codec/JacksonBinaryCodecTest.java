@@ -0,0 +1,125 @@
+package guru.springframework.spring5webfluxrest.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import guru.springframework.spring5webfluxrest.config.WebFluxConfig;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import org.junit.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JacksonBinaryCodecTest {
+
+    private static final ResolvableType VENDOR = ResolvableType.forClass(Vendor.class);
+
+    private final Vendor bob = Vendor.builder().id("1").version(2L).firstName("Bob").lastName("Bobbins").build();
+    private final Vendor jim = Vendor.builder().id("2").version(0L).firstName("Jim").lastName("Jimmins").build();
+
+    @Test
+    public void cborStreamRoundTrips() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+
+        roundTrip(mapper, WebFluxConfig.APPLICATION_STREAM_CBOR,
+                new JacksonBinaryDecoder(mapper, 1024, WebFluxConfig.APPLICATION_STREAM_CBOR));
+    }
+
+    @Test
+    public void cborBodyOverTheLimitIsRefused() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        JacksonBinaryEncoder encoder = encoder(mapper, WebFluxConfig.APPLICATION_STREAM_CBOR);
+        JacksonBinaryDecoder decoder = new JacksonBinaryDecoder(mapper, 32, WebFluxConfig.APPLICATION_STREAM_CBOR);
+
+        Flux<DataBuffer> encoded = encoder.encode(Flux.just(bob, jim), new DefaultDataBufferFactory(), VENDOR,
+                WebFluxConfig.APPLICATION_STREAM_CBOR, Collections.emptyMap());
+
+        StepVerifier.create(decoder.decode(encoded, VENDOR, WebFluxConfig.APPLICATION_STREAM_CBOR,
+                Collections.emptyMap()))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.PAYLOAD_TOO_LARGE,
+                        ((ResponseStatusException) e).getStatus()))
+                .verify();
+    }
+
+    @Test
+    public void smileStreamDecodesIncrementally() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+
+        roundTrip(mapper, WebFluxConfig.APPLICATION_STREAM_SMILE,
+                new Jackson2SmileDecoder(mapper, WebFluxConfig.APPLICATION_STREAM_SMILE));
+    }
+
+    @Test
+    public void singleValueIsOneDocument() throws Exception {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        JacksonBinaryEncoder encoder = encoder(mapper, WebFluxConfig.APPLICATION_CBOR);
+
+        List<DataBuffer> buffers = encoder.encode(Mono.just(bob), new DefaultDataBufferFactory(), VENDOR,
+                WebFluxConfig.APPLICATION_CBOR, Collections.emptyMap()).collectList().block();
+
+        assertEquals(1, buffers.size());
+        byte[] bytes = new byte[buffers.get(0).readableByteCount()];
+        buffers.get(0).read(bytes);
+        assertEquals(bob, mapper.readValue(bytes, Vendor.class));
+    }
+
+    @Test
+    public void binaryFormatsAreSmallerThanJson() throws Exception {
+        List<Vendor> vendors = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            vendors.add(Vendor.builder().id(String.format("%024x", i)).version((long) i)
+                    .firstName("First" + i).lastName("Last" + i).build());
+        }
+
+        int json = Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(vendors).length;
+        int smile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build()
+                .writeValueAsBytes(vendors).length;
+        int cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build()
+                .writeValueAsBytes(vendors).length;
+
+        String sizes = String.format("1000 vendors: json=%d, smile=%d, cbor=%d bytes", json, smile, cbor);
+        assertTrue(sizes, smile < json);
+        assertTrue(sizes, cbor < json);
+    }
+
+    @Test
+    public void onlyClaimsItsOwnMediaTypes() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        JacksonBinaryEncoder encoder = encoder(mapper, WebFluxConfig.APPLICATION_CBOR);
+
+        assertTrue(encoder.canEncode(VENDOR, WebFluxConfig.APPLICATION_CBOR));
+        assertFalse(encoder.canEncode(VENDOR, MimeType.valueOf("application/json")));
+        assertFalse(encoder.canEncode(VENDOR, null));
+    }
+
+    private void roundTrip(ObjectMapper mapper, MimeType mimeType, Decoder<Object> decoder) {
+        JacksonBinaryEncoder encoder = encoder(mapper, mimeType);
+
+        // One buffer per element, plus the closing of the array
+        Flux<DataBuffer> encoded = encoder.encode(Flux.just(bob, jim), new DefaultDataBufferFactory(), VENDOR,
+                mimeType, Collections.emptyMap());
+
+        StepVerifier.create(decoder.decode(encoded, VENDOR, mimeType, Collections.emptyMap()))
+                .expectNext(bob, jim)
+                .verifyComplete();
+    }
+
+    private static JacksonBinaryEncoder encoder(ObjectMapper mapper, MimeType mimeType) {
+        return new JacksonBinaryEncoder(mapper, Collections.emptyList(), mimeType);
+    }
+}
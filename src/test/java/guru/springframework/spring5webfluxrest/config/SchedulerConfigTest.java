@@ -0,0 +1,80 @@
+package guru.springframework.spring5webfluxrest.config;
+
+import guru.springframework.spring5webfluxrest.blocking.BlockingCallDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class SchedulerConfigTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private Scheduler blockingScheduler;
+
+    @BeforeClass
+    public static void detectBlockingCalls() {
+        BlockingCallDetector.install(BlockingCallDetector.FAIL);
+    }
+
+    @Before
+    public void setUp() {
+        ApiProperties apiProperties = new ApiProperties();
+        apiProperties.getBlocking().setMaxThreads(1);
+        apiProperties.getBlocking().setQueueCapacity(1);
+
+        blockingScheduler = new SchedulerConfig().blockingScheduler(apiProperties, new SimpleMeterRegistry());
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        blockingScheduler.dispose();
+    }
+
+    @Test
+    public void allowsBlockingCallsOnItsThreads() {
+        StepVerifier.create(Mono.fromCallable(() -> {
+            Thread.sleep(1);
+            return Thread.currentThread().getName();
+        }).subscribeOn(blockingScheduler))
+                .assertNext(name -> assertTrue(name, name.startsWith("blocking-")))
+                .verifyComplete();
+    }
+
+    @Test
+    public void rejectsWorkBeyondItsThreadsAndQueue() {
+        // One task holds the only thread, the next fills the queue
+        blockingScheduler.schedule(this::awaitRelease);
+        blockingScheduler.schedule(this::awaitRelease);
+
+        StepVerifier.create(Mono.fromCallable(() -> true).subscribeOn(blockingScheduler))
+                .expectError(RejectedExecutionException.class)
+                .verify(Duration.ofSeconds(5));
+
+        release.countDown();
+
+        StepVerifier.create(Mono.fromCallable(() -> true).subscribeOn(blockingScheduler))
+                .expectNext(true)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,19 +1,41 @@
 package guru.springframework.spring5webfluxrest.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring5webfluxrest.blocking.BlockingCallDetector;
+import guru.springframework.spring5webfluxrest.changes.ChangeFeeds;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
 import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
 import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
+import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.reactivestreams.Publisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 public class CategoryControllerTest {
 
@@ -21,14 +43,28 @@ public class CategoryControllerTest {
 
     private CategoryRepository categoryRepository;
 
+    private VendorRepository vendorRepository;
+
+    private ChangeFeeds changeFeeds;
+
     private WebTestClient webTestClient;
 
+    @BeforeClass
+    public static void detectBlockingCalls() {
+        // Any blocking call on an event loop or Reactor worker fails the test
+        BlockingCallDetector.install(BlockingCallDetector.FAIL);
+    }
+
     @Before
     public void setUp() {
         // A non-annotation based way of creating a mock
         categoryRepository = Mockito.mock(CategoryRepository.class);
-        CategoryController controller = new CategoryController(categoryRepository);
-        webTestClient = WebTestClient.bindToController(controller).build();
+        vendorRepository = Mockito.mock(VendorRepository.class);
+        ApiProperties apiProperties = new ApiProperties();
+        changeFeeds = new ChangeFeeds(apiProperties, new SimpleMeterRegistry());
+        apiProperties.getIngest().setBatchSize(2);
+        CategoryController controller = new CategoryController(categoryRepository, vendorRepository, apiProperties, changeFeeds, new ObjectMapper());
+        webTestClient = WebTestClients.bindToController(controller);
     }
 
     @Test
@@ -45,6 +81,59 @@ public class CategoryControllerTest {
                 .hasSize(2);
     }
 
+    @Test
+    public void getCategoriesAfterWithoutLimitIsRejected() {
+        webTestClient.get().uri(BASE_URL + "?after=2")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verifyZeroInteractions(categoryRepository);
+    }
+
+    @Test
+    public void getCategoryPage() {
+        given(categoryRepository.findPage(null, 3))
+                .willReturn(Flux.just(
+                        Category.builder().id("1").description("Category1").build(),
+                        Category.builder().id("2").description("Category2").build(),
+                        Category.builder().id("3").description("Category3").build()));
+
+        webTestClient.get().uri(BASE_URL + "?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[1].id").isEqualTo("2")
+                .jsonPath("$.items[2]").doesNotExist()
+                .jsonPath("$.next").isEqualTo("2");
+    }
+
+    @Test
+    public void getCategoryLastPage() {
+        given(categoryRepository.findPage("2", 3))
+                .willReturn(Flux.just(Category.builder().id("3").description("Category3").build()));
+
+        webTestClient.get().uri(BASE_URL + "?limit=2&after=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo("3")
+                .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    public void streamCategories() {
+        given(categoryRepository.stream(isNull(), anyInt()))
+                .willReturn(Flux.just(Category.builder().id("1").description("Category1").build(), Category.builder().id("2").description("Category2").build()));
+
+        webTestClient.get().uri(BASE_URL)
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_STREAM_JSON)
+                .expectBodyList(Category.class)
+                .hasSize(2);
+    }
+
     @Test
     public void getCategoryById() {
         Category category = Category.builder().description("Category1").build();
@@ -59,6 +148,107 @@ public class CategoryControllerTest {
                 .isEqualTo(category);
     }
 
+    @Test
+    public void getCategoryByIdNotModified() {
+
+        given(categoryRepository.findById(anyString()))
+                .willReturn(Mono.just(Category.builder().description("Category1").id("dummyId").version(3L).build()));
+
+        webTestClient.get().uri(BASE_URL + "/dummyId")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void getCategoryVendors() {
+        given(vendorRepository.findByCategoryId("1"))
+                .willReturn(Flux.just(Vendor.builder().id("7").lastName("Bobbins").build()));
+
+        webTestClient.get().uri(BASE_URL + "/1/vendors")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Vendor.class)
+                .hasSize(1);
+
+        Mockito.verify(categoryRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    public void getCategoryVendorsNotFound() {
+        given(vendorRepository.findByCategoryId("1")).willReturn(Flux.empty());
+        given(categoryRepository.existsById("1")).willReturn(Mono.just(false));
+
+        webTestClient.get().uri(BASE_URL + "/1/vendors")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void getCategoryFieldsById() {
+        given(categoryRepository.findByIdProjected(anyString(), anyCollection()))
+                .willReturn(Mono.just(Collections.<String, Object>singletonMap("description", "Cat1")));
+
+        webTestClient.get().uri(BASE_URL + "/dummyId?fields=description")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.description").isEqualTo("Cat1")
+                .jsonPath("$.id").doesNotExist();
+    }
+
+    @Test
+    public void getCategoryFieldsPageIsRejected() {
+        webTestClient.get().uri(BASE_URL + "?fields=description&limit=2")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verifyZeroInteractions(categoryRepository);
+    }
+
+    @Test
+    public void multiGetCategories() {
+        given(categoryRepository.findAllById(any(Iterable.class)))
+                .willReturn(Flux.just(Category.builder().id("1").description("Category1").build(), Category.builder().id("3").description("Category3").build()));
+
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Arrays.asList("3", "missing", "1", "3"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(4)
+                .jsonPath("$[0].id").isEqualTo("3")
+                .jsonPath("$[0].document.id").isEqualTo("3")
+                .jsonPath("$[1].found").isEqualTo(false)
+                .jsonPath("$[2].document.id").isEqualTo("1")
+                .jsonPath("$[3].found").isEqualTo(true);
+
+        // A single lookup for the distinct ids
+        Mockito.verify(categoryRepository).findAllById(any(Iterable.class));
+    }
+
+    @Test
+    public void multiGetCategoriesWithInvalidIds() {
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Arrays.asList("1", null))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Arrays.asList("1", " "))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Collections.emptyList())
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verify(categoryRepository, never()).findAllById(any(Iterable.class));
+    }
+
     @Test
     public void createCategory() {
         Flux<Category> categoryFlux =
@@ -73,38 +263,76 @@ public class CategoryControllerTest {
                 .expectStatus().isCreated();
     }
 
+    @Test
+    public void ingestCategories() {
+        given(categoryRepository.insertBatch(any(List.class)))
+                .willAnswer(invocation -> Mono.just(
+                        BulkInsertResult.of(invocation.<List<Category>>getArgument(0).size(), 0)));
+
+        webTestClient.post().uri(BASE_URL)
+                .contentType(MediaType.APPLICATION_STREAM_JSON)
+                .body(Flux.just(Category.builder().description("Category1").build(), Category.builder().description("Category1").build(), Category.builder().description("Category1").build()), Category.class)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.inserted").isEqualTo(3)
+                .jsonPath("$.failed").isEqualTo(0);
+
+        // Batch size of 2 splits the three documents into two bulk inserts
+        Mockito.verify(categoryRepository, times(2)).insertBatch(any(List.class));
+        Mockito.verify(categoryRepository, never()).saveAll(any(Publisher.class));
+    }
+
     @Test
     public void updateCategory() {
 
         Category category = Category.builder().description("Category1").build();
 
-        given(categoryRepository.save(any(Category.class)))
-                .willReturn(Mono.empty());
+        given(categoryRepository.replace(anyString(), any(Category.class), isNull()))
+                .willReturn(Mono.just(Category.builder().description("Category1").id("dummyId").version(1L).build()));
 
         webTestClient.put().uri(BASE_URL + "/dummyId")
                 .body(Mono.just(category), Category.class)
                 .exchange()
-                .expectStatus().isOk();
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        Mockito.verify(categoryRepository, never()).save(any(Category.class));
     }
 
     @Test
-    public void patchCategoryWithChange() {
+    public void updateCategoryIfMatch() {
 
         Category category = Category.builder().description("Category1").build();
 
-        given(categoryRepository.findById(anyString()))
-                .willReturn(Mono.just(category));
+        given(categoryRepository.replace(anyString(), any(Category.class), eq(3L)))
+                .willReturn(Mono.error(new OptimisticLockingFailureException("modified")));
 
-        given(categoryRepository.save(any(Category.class)))
-                .willReturn(Mono.empty());
+        webTestClient.put().uri(BASE_URL + "/dummyId")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .body(Mono.just(category), Category.class)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    public void patchCategoryWithChange() {
+
+        Category patched = Category.builder().description("Category2").build();
+
+        given(categoryRepository.patch(anyString(), any(Category.class), isNull()))
+                .willReturn(Mono.just(patched));
 
         webTestClient.patch().uri(BASE_URL + "/dummyId")
                 .body(Mono.just(Category.builder().description("Category2").build()), Category.class)
                 .exchange()
-                .expectStatus().isOk();
+                .expectStatus().isOk()
+                .expectBody(Category.class)
+                .isEqualTo(patched);
 
-        Mockito.verify(categoryRepository).findById(anyString());
-        Mockito.verify(categoryRepository).save(any(Category.class));
+        Mockito.verify(categoryRepository).patch(anyString(), any(Category.class), isNull());
+        Mockito.verify(categoryRepository, never()).findById(anyString());
+        Mockito.verify(categoryRepository, never()).save(any(Category.class));
     }
 
     @Test
@@ -112,18 +340,17 @@ public class CategoryControllerTest {
 
         Category category = Category.builder().description("Category1").build();
 
-        given(categoryRepository.findById(anyString()))
+        given(categoryRepository.patch(anyString(), any(Category.class), isNull()))
                 .willReturn(Mono.just(category));
 
-        given(categoryRepository.save(any(Category.class)))
-                .willReturn(Mono.empty());
-
         webTestClient.patch().uri(BASE_URL + "/dummyId")
                 .body(Mono.just(Category.builder().description("Category1").build()), Category.class)
                 .exchange()
-                .expectStatus().isOk();
+                .expectStatus().isOk()
+                .expectBody(Category.class)
+                .isEqualTo(category);
 
-        Mockito.verify(categoryRepository).findById(anyString());
+        Mockito.verify(categoryRepository).patch(anyString(), any(Category.class), isNull());
         Mockito.verify(categoryRepository, never()).save(any(Category.class));
     }
 
@@ -132,18 +359,15 @@ public class CategoryControllerTest {
 
         Category category = Category.builder().description("Category1").build();
 
-        given(categoryRepository.findById(anyString()))
-                .willReturn(Mono.empty());
-
-        given(categoryRepository.save(any(Category.class)))
+        given(categoryRepository.patch(anyString(), any(Category.class), isNull()))
                 .willReturn(Mono.empty());
 
         webTestClient.patch().uri(BASE_URL + "/dummyId")
                 .body(Mono.just(category), Category.class)
                 .exchange()
-                .expectStatus().is5xxServerError();
+                .expectStatus().isNotFound();
 
-        Mockito.verify(categoryRepository).findById(anyString());
+        Mockito.verify(categoryRepository).patch(anyString(), any(Category.class), isNull());
         Mockito.verify(categoryRepository, never()).save(any(Category.class));
     }
 
@@ -0,0 +1,146 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring5webfluxrest.changes.ChangeFeeds;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.repositories.inmemory.InMemoryCategoryRepository;
+import guru.springframework.spring5webfluxrest.repositories.inmemory.InMemoryVendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CategorySnapshotWebFilterTest {
+
+    private InMemoryCategoryRepository categoryRepository;
+
+    private ChangeFeeds changeFeeds;
+
+    private CategorySnapshot categorySnapshot;
+
+    private CategorySnapshotWebFilter filter;
+
+    private AtomicInteger passedOn;
+
+    private WebFilterChain chain;
+
+    private Category fruits;
+
+    @Before
+    public void setUp() {
+        ApiProperties apiProperties = new ApiProperties();
+
+        categoryRepository = new InMemoryCategoryRepository();
+        fruits = categoryRepository.save(Category.builder().description("Fruits").build()).block();
+        categoryRepository.save(Category.builder().description("Nuts").build()).block();
+
+        changeFeeds = new ChangeFeeds(apiProperties, new SimpleMeterRegistry());
+        categorySnapshot = new CategorySnapshot(categoryRepository, changeFeeds, new ObjectMapper(), apiProperties);
+        categorySnapshot.start();
+        categorySnapshot.reload().block();
+
+        filter = new CategorySnapshotWebFilter(categorySnapshot);
+
+        passedOn = new AtomicInteger();
+        chain = exchange -> {
+            passedOn.incrementAndGet();
+            return Mono.empty();
+        };
+    }
+
+    @After
+    public void tearDown() {
+        categorySnapshot.stop();
+    }
+
+    @Test
+    public void servesCategoriesFromTheSnapshot() {
+        MockServerWebExchange all = get("/api/v1/categories");
+        MockServerWebExchange one = get("/api/v1/categories/" + fruits.getId());
+
+        assertEquals(0, passedOn.get());
+        assertTrue(all.getResponse().getBodyAsString().block().contains("Nuts"));
+        assertEquals(MediaType.APPLICATION_JSON_UTF8, one.getResponse().getHeaders().getContentType());
+        assertEquals("\"0\"", one.getResponse().getHeaders().getETag());
+        assertTrue(one.getResponse().getBodyAsString().block().contains("Fruits"));
+    }
+
+    @Test
+    public void answersNotModifiedForCurrentTag() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+                .get("/api/v1/categories/" + fruits.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\""));
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(HttpStatus.NOT_MODIFIED, exchange.getResponse().getStatusCode());
+        assertEquals(0, passedOn.get());
+    }
+
+    @Test
+    public void appliesControllerWritesBeforeTheyAreAcknowledged() {
+        CategoryController controller = new CategoryController(categoryRepository, new InMemoryVendorRepository(),
+                new ApiProperties(), changeFeeds, new ObjectMapper());
+
+        controller.patchCategory(fruits.getId(), Category.builder().description("Exotic Fruits").build(), null)
+                .block();
+
+        MockServerWebExchange updated = get("/api/v1/categories/" + fruits.getId());
+        assertTrue(updated.getResponse().getBodyAsString().block().contains("Exotic Fruits"));
+        assertEquals("\"1\"", updated.getResponse().getHeaders().getETag());
+
+        controller.bulkCategories(Flux.just(BulkOperation.<Category>delete(fruits.getId()))).blockLast();
+
+        get("/api/v1/categories/" + fruits.getId());
+        assertEquals(1, passedOn.get());
+    }
+
+    @Test
+    public void ignoresChangesPublishedOutOfOrder() {
+        Category first = categoryRepository.patch(fruits.getId(),
+                Category.builder().description("Exotic Fruits").build(), null).block();
+        Category second = categoryRepository.patch(fruits.getId(),
+                Category.builder().description("Dried Fruits").build(), null).block();
+
+        changeFeeds.getCategories().updated(second.getId(), second);
+        changeFeeds.getCategories().updated(first.getId(), first);
+
+        MockServerWebExchange updated = get("/api/v1/categories/" + fruits.getId());
+        assertTrue(updated.getResponse().getBodyAsString().block().contains("Dried Fruits"));
+        assertEquals("\"2\"", updated.getResponse().getHeaders().getETag());
+    }
+
+    @Test
+    public void passesOnOtherReads() {
+        get("/api/v1/categories?limit=10");
+        get("/api/v1/categories/changes");
+        get("/api/v1/vendors");
+
+        MockServerWebExchange stream = MockServerWebExchange.from(MockServerHttpRequest
+                .get("/api/v1/categories")
+                .accept(MediaType.APPLICATION_STREAM_JSON));
+        filter.filter(stream, chain).block();
+
+        assertEquals(4, passedOn.get());
+    }
+
+    private MockServerWebExchange get(String path) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+}
@@ -1,21 +1,61 @@
 package guru.springframework.spring5webfluxrest.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.blocking.BlockingCallDetector;
+import guru.springframework.spring5webfluxrest.changes.ChangeFeeds;
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.BulkInsertResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult.Status;
+import guru.springframework.spring5webfluxrest.domain.ChangeEvent;
 import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
 import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.reactivestreams.Publisher;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.FluxExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 public class VendorControllerTest {
 
@@ -23,13 +63,30 @@ public class VendorControllerTest {
 
     private VendorRepository vendorRepository;
 
+    private CategoryRepository categoryRepository;
+
+    private ChangeFeeds changeFeeds;
+
     private WebTestClient webTestClient;
 
+    @BeforeClass
+    public static void detectBlockingCalls() {
+        // Any blocking call on an event loop or Reactor worker fails the test
+        BlockingCallDetector.install(BlockingCallDetector.FAIL);
+    }
+
     @Before
     public void setUp() {
         vendorRepository = Mockito.mock(VendorRepository.class);
-        VendorController controller = new VendorController(vendorRepository);
-        webTestClient = WebTestClient.bindToController(controller).build();
+        categoryRepository = Mockito.mock(CategoryRepository.class);
+        ApiProperties apiProperties = new ApiProperties();
+        changeFeeds = new ChangeFeeds(apiProperties, new SimpleMeterRegistry());
+        apiProperties.getIngest().setBatchSize(2);
+        apiProperties.getBulk().setChunkSize(2);
+        apiProperties.getExport().setFlushDocuments(2);
+        apiProperties.getExpand().setWindowSize(2);
+        VendorController controller = new VendorController(vendorRepository, categoryRepository, apiProperties, changeFeeds, new ObjectMapper());
+        webTestClient = WebTestClients.bindToController(controller);
     }
 
     @Test
@@ -48,6 +105,219 @@ public class VendorControllerTest {
                 .contains(jim);
     }
 
+    @Test
+    public void getAllVendorsAfterWithoutLimitIsRejected() {
+        webTestClient.get().uri(BASE_URL + "?after=2")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verifyZeroInteractions(vendorRepository);
+    }
+
+    @Test
+    public void getVendorPage() {
+        given(vendorRepository.findPage(null, 3))
+                .willReturn(Flux.just(
+                        Vendor.builder().id("1").firstName("Bob").lastName("Bobbins").build(),
+                        Vendor.builder().id("2").firstName("Bob").lastName("Bobbins").build(),
+                        Vendor.builder().id("3").firstName("Bob").lastName("Bobbins").build()));
+
+        webTestClient.get().uri(BASE_URL + "?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[1].id").isEqualTo("2")
+                .jsonPath("$.items[2]").doesNotExist()
+                .jsonPath("$.next").isEqualTo("2");
+    }
+
+    @Test
+    public void getVendorLastPage() {
+        given(vendorRepository.findPage("2", 3))
+                .willReturn(Flux.just(Vendor.builder().id("3").firstName("Bob").lastName("Bobbins").build()));
+
+        webTestClient.get().uri(BASE_URL + "?limit=2&after=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo("3")
+                .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    public void streamVendors() {
+        given(vendorRepository.stream(isNull(), anyInt()))
+                .willReturn(Flux.just(Vendor.builder().id("1").firstName("Bob").lastName("Bobbins").build(), Vendor.builder().id("2").firstName("Bob").lastName("Bobbins").build()));
+
+        webTestClient.get().uri(BASE_URL)
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_STREAM_JSON)
+                .expectBodyList(Vendor.class)
+                .hasSize(2);
+    }
+
+    @Test
+    public void exportVendorsAsGzipNdjson() throws IOException {
+        given(vendorRepository.stream(eq("1"), anyInt()))
+                .willReturn(Flux.just(Vendor.builder().id("2").firstName("Bob").lastName("Bobbins").build(),
+                        Vendor.builder().id("3").firstName("Jim").lastName("Jimmins").build(),
+                        Vendor.builder().id("4").firstName("Sam").lastName("Sammins").build()));
+
+        EntityExchangeResult<byte[]> result = webTestClient.get().uri(BASE_URL + "/_export?after=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(Exports.APPLICATION_GZIP)
+                .expectBody(byte[].class)
+                .returnResult();
+        byte[] body = result.getResponseBody();
+
+        // The gzip file is the payload, not an encoding for a transparent client to undo
+        assertNull(result.getResponseHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(result.getResponseHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION)
+                .contains("vendors.ndjson.gz"));
+
+        // Chunks are sync-flushed parts of one gzip member, which decompresses as a whole
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8))) {
+            ObjectMapper objectMapper = new ObjectMapper();
+
+            assertEquals("2", objectMapper.readValue(lines.readLine(), Vendor.class).getId());
+            assertEquals("3", objectMapper.readValue(lines.readLine(), Vendor.class).getId());
+            assertEquals("Sammins", objectMapper.readValue(lines.readLine(), Vendor.class).getLastName());
+            assertNull(lines.readLine());
+        }
+    }
+
+    @Test
+    public void getVendorsWithCategoriesLooksUpEachWindowOnce() {
+        given(vendorRepository.stream(isNull(), anyInt()))
+                .willReturn(Flux.just(
+                        Vendor.builder().id("1").lastName("Bobbins").categoryIds(Arrays.asList("a", "b")).build(),
+                        Vendor.builder().id("2").lastName("Jimmins").categoryIds(Arrays.asList("b", "gone")).build(),
+                        Vendor.builder().id("3").lastName("Sammins").build()));
+        given(categoryRepository.findAllById(any(Iterable.class)))
+                .willReturn(Flux.just(Category.builder().id("a").description("Fruits").build(),
+                        Category.builder().id("b").description("Nuts").build()));
+
+        webTestClient.get().uri(BASE_URL + "?expand=categories")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].lastName").isEqualTo("Bobbins")
+                .jsonPath("$[0].categories[1].description").isEqualTo("Nuts")
+                .jsonPath("$[1].categories.length()").isEqualTo(1)
+                .jsonPath("$[2].categories").isEmpty();
+
+        // Two windows of two; the second has no category ids, so needs no lookup
+        Mockito.verify(categoryRepository, times(1)).findAllById(any(Iterable.class));
+        Mockito.verify(categoryRepository, never()).findById(anyString());
+    }
+
+    @Test
+    public void getVendorPageWithCategories() {
+        given(vendorRepository.findPage(null, 3))
+                .willReturn(Flux.just(
+                        Vendor.builder().id("1").lastName("Bobbins").categoryIds(Arrays.asList("a")).build(),
+                        Vendor.builder().id("2").lastName("Jimmins").build(),
+                        Vendor.builder().id("3").lastName("Sammins").build()));
+        given(categoryRepository.findAllById(any(Iterable.class)))
+                .willReturn(Flux.just(Category.builder().id("a").description("Fruits").build()));
+
+        webTestClient.get().uri(BASE_URL + "?expand=categories&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].categories[0].description").isEqualTo("Fruits")
+                .jsonPath("$.items[1].lastName").isEqualTo("Jimmins")
+                .jsonPath("$.items[2]").doesNotExist()
+                .jsonPath("$.next").isEqualTo("2");
+    }
+
+    @Test
+    public void getVendorFieldsWithCategoriesIsRejected() {
+        webTestClient.get().uri(BASE_URL + "?expand=categories&fields=lastName")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri(BASE_URL + "?expand=categories&fields=lastName&limit=2")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verifyZeroInteractions(vendorRepository);
+    }
+
+    @Test
+    public void getVendorsWithUnknownExpansion() {
+        webTestClient.get().uri(BASE_URL + "?expand=suppliers")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getVendorFields() {
+        Map<String, Object> bob = new LinkedHashMap<>();
+        bob.put("id", "1");
+        bob.put("lastName", "Bobbins");
+
+        given(vendorRepository.findAllProjected(anyCollection()))
+                .willReturn(Flux.just(bob));
+
+        webTestClient.get().uri(BASE_URL + "?fields=id,lastName")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo("1")
+                .jsonPath("$[0].lastName").isEqualTo("Bobbins")
+                .jsonPath("$[0].firstName").doesNotExist();
+
+        Mockito.verify(vendorRepository).findAllProjected(new LinkedHashSet<>(Arrays.asList("id", "lastName")));
+        Mockito.verify(vendorRepository, never()).findAll();
+    }
+
+    @Test
+    public void getVendorUnknownField() {
+        webTestClient.get().uri(BASE_URL + "/dummyId?fields=id,password")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verify(vendorRepository, never()).findByIdProjected(anyString(), anyCollection());
+    }
+
+    @Test
+    public void searchVendorsByPrefix() {
+        given(vendorRepository.searchByNamePrefix("osb", 5))
+                .willReturn(Flux.just(Vendor.builder().id("1").firstName("Ozzy").lastName("Osbourne").build()));
+
+        webTestClient.get().uri(BASE_URL + "/search?q=osb&limit=5")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Vendor.class)
+                .hasSize(1);
+
+        Mockito.verify(vendorRepository, never()).findAll();
+    }
+
+    @Test
+    public void searchVendorsByText() {
+        given(vendorRepository.searchByText("ronnie dio", 20))
+                .willReturn(Flux.just(Vendor.builder().id("2").firstName("Ronnie James").lastName("Dio").build()));
+
+        webTestClient.get().uri(BASE_URL + "/search?q=ronnie dio&mode=text")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Vendor.class)
+                .hasSize(1);
+    }
+
+    @Test
+    public void searchVendorsUnknownMode() {
+        webTestClient.get().uri(BASE_URL + "/search?q=osb&mode=fuzzy")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     public void getVendorById() {
         Vendor jim = Vendor.builder().firstName("Jim").lastName("Jimmins").build();
@@ -62,6 +332,93 @@ public class VendorControllerTest {
                 .isEqualTo(jim);
     }
 
+    @Test
+    public void blockingCallInAControllerFails() {
+        Vendor jim = Vendor.builder().firstName("Jim").lastName("Jimmins").build();
+
+        // As if the controller waited for a result instead of composing it
+        given(vendorRepository.findById(anyString()))
+                .willAnswer(invocation -> Mono.just(Mono.delay(Duration.ofMillis(10)).thenReturn(jim).block()));
+
+        webTestClient.get().uri(BASE_URL + "/dummyId")
+                .exchange()
+                .expectStatus().is5xxServerError();
+    }
+
+    @Test
+    public void getVendorByIdNotModified() {
+
+        given(vendorRepository.findById(anyString()))
+                .willReturn(Mono.just(Vendor.builder().firstName("Bob").lastName("Bobbins").id("dummyId").version(3L).build()));
+
+        webTestClient.get().uri(BASE_URL + "/dummyId")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void multiGetVendors() {
+        given(vendorRepository.findAllById(any(Iterable.class)))
+                .willReturn(Flux.just(Vendor.builder().id("1").firstName("Bob").lastName("Bobbins").build(), Vendor.builder().id("3").firstName("Bob").lastName("Bobbins").build()));
+
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Arrays.asList("3", "missing", "1", "3"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(4)
+                .jsonPath("$[0].id").isEqualTo("3")
+                .jsonPath("$[0].document.id").isEqualTo("3")
+                .jsonPath("$[1].found").isEqualTo(false)
+                .jsonPath("$[2].document.id").isEqualTo("1")
+                .jsonPath("$[3].found").isEqualTo(true);
+
+        // A single lookup for the distinct ids
+        Mockito.verify(vendorRepository).findAllById(any(Iterable.class));
+    }
+
+    @Test
+    public void getVendorFieldsPageIsRejected() {
+        webTestClient.get().uri(BASE_URL + "?fields=lastName&limit=2")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verifyZeroInteractions(vendorRepository);
+    }
+
+    @Test
+    public void multiGetVendorsOverLimit() {
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Collections.nCopies(501, "1"))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verify(vendorRepository, never()).findAllById(any(Iterable.class));
+    }
+
+    @Test
+    public void multiGetVendorsWithInvalidIds() {
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Arrays.asList("1", null))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Arrays.asList("1", " "))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri(BASE_URL + "/_mget")
+                .syncBody(Collections.emptyList())
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        Mockito.verify(vendorRepository, never()).findAllById(any(Iterable.class));
+    }
+
     @Test
     public void createVendor() {
         Flux<Vendor> vendorFlux =
@@ -76,38 +433,141 @@ public class VendorControllerTest {
                 .expectStatus().isCreated();
     }
 
+    @Test
+    public void ingestVendors() {
+        given(vendorRepository.insertBatch(any(List.class)))
+                .willAnswer(invocation -> Mono.just(
+                        BulkInsertResult.of(invocation.<List<Vendor>>getArgument(0).size(), 0)));
+
+        webTestClient.post().uri(BASE_URL)
+                .contentType(MediaType.APPLICATION_STREAM_JSON)
+                .body(Flux.just(Vendor.builder().firstName("Bob").lastName("Bobbins").build(), Vendor.builder().firstName("Bob").lastName("Bobbins").build(), Vendor.builder().firstName("Bob").lastName("Bobbins").build()), Vendor.class)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.inserted").isEqualTo(3)
+                .jsonPath("$.failed").isEqualTo(0);
+
+        // Batch size of 2 splits the three documents into two bulk inserts
+        Mockito.verify(vendorRepository, times(2)).insertBatch(any(List.class));
+        Mockito.verify(vendorRepository, never()).saveAll(any(Publisher.class));
+    }
+
+    @Test
+    public void bulkVendors() {
+        given(vendorRepository.bulkWrite(any(List.class)))
+                .willAnswer(invocation -> Flux.fromIterable(invocation.<List<BulkOperation<Vendor>>>getArgument(0))
+                        .map(operation -> BulkOperationResult.of(operation, operation.getId(),
+                                operation.getAction() == BulkOperation.Action.DELETE ? Status.DELETED : Status.UPDATED)));
+
+        webTestClient.post().uri(BASE_URL + "/_bulk")
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .syncBody(Arrays.asList(
+                        BulkOperation.upsert("1", Vendor.builder().firstName("Bob").lastName("Bobbins").build()),
+                        BulkOperation.patch("2", Vendor.builder().lastName("Miggins").build()),
+                        BulkOperation.delete("3")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BulkOperationResult.class)
+                .isEqualTo(Arrays.asList(
+                        new BulkOperationResult(BulkOperation.Action.UPSERT, "1", Status.UPDATED, null),
+                        new BulkOperationResult(BulkOperation.Action.PATCH, "2", Status.UPDATED, null),
+                        new BulkOperationResult(BulkOperation.Action.DELETE, "3", Status.DELETED, null)));
+
+        // Chunk size of 2 splits the three operations into two bulk writes
+        Mockito.verify(vendorRepository, times(2)).bulkWrite(any(List.class));
+    }
+
     @Test
     public void updateVendor() {
 
         Vendor vendor = Vendor.builder().firstName("Bob").lastName("Bobbins").build();
 
-        given(vendorRepository.save(any(Vendor.class)))
-                .willReturn(Mono.empty());
+        given(vendorRepository.replace(anyString(), any(Vendor.class), isNull()))
+                .willReturn(Mono.just(Vendor.builder().firstName("Bob").lastName("Bobbins").id("dummyId").version(1L).build()));
 
         webTestClient.put().uri(BASE_URL + "/dummyId")
                 .body(Mono.just(vendor), Vendor.class)
                 .exchange()
-                .expectStatus().isOk();
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        Mockito.verify(vendorRepository, never()).save(any(Vendor.class));
     }
 
     @Test
-    public void patchVendorWithChange() {
+    public void updateVendorPublishesChange() {
+        Vendor replaced = Vendor.builder().firstName("Bob").lastName("Bobbins").id("dummyId").version(1L).build();
+
+        given(vendorRepository.replace(anyString(), any(Vendor.class), isNull()))
+                .willReturn(Mono.just(replaced));
+
+        StepVerifier.create(changeFeeds.getVendors().subscribe(null).take(1))
+                .then(() -> webTestClient.put().uri(BASE_URL + "/dummyId")
+                        .body(Mono.just(Vendor.builder().firstName("Bob").lastName("Bobbins").build()), Vendor.class)
+                        .exchange()
+                        .expectStatus().isOk())
+                .assertNext(event -> {
+                    assertEquals(ChangeEvent.Type.UPDATE, event.getType());
+                    assertEquals("dummyId", event.getId());
+                    assertEquals(replaced, event.getDocument());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void vendorChangesResetUnknownToken() {
+        FluxExchangeResult<ServerSentEvent<ChangeEvent<Vendor>>> result = webTestClient.get()
+                .uri(BASE_URL + "/changes?after=stale-42")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<ChangeEvent<Vendor>>>() {
+                });
+
+        StepVerifier.create(result.getResponseBody())
+                .assertNext(event -> {
+                    assertEquals("reset", event.event());
+                    assertEquals(ChangeEvent.Type.RESET, event.data().getType());
+                    assertEquals(event.data().getToken(), event.id());
+                })
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void updateVendorIfMatch() {
 
         Vendor vendor = Vendor.builder().firstName("Bob").lastName("Bobbins").build();
 
-        given(vendorRepository.findById(anyString()))
-                .willReturn(Mono.just(vendor));
+        given(vendorRepository.replace(anyString(), any(Vendor.class), eq(3L)))
+                .willReturn(Mono.error(new OptimisticLockingFailureException("modified")));
 
-        given(vendorRepository.save(any(Vendor.class)))
-                .willReturn(Mono.empty());
+        webTestClient.put().uri(BASE_URL + "/dummyId")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .body(Mono.just(vendor), Vendor.class)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    public void patchVendorWithChange() {
+
+        Vendor patched = Vendor.builder().firstName("Bob").lastName("Miggins").build();
+
+        given(vendorRepository.patch(anyString(), any(Vendor.class), isNull()))
+                .willReturn(Mono.just(patched));
 
         webTestClient.patch().uri(BASE_URL + "/dummyId")
-                .body(Mono.just(Vendor.builder().firstName("Bob").lastName("Miggins").build()), Vendor.class)
+                .body(Mono.just(Vendor.builder().lastName("Miggins").build()), Vendor.class)
                 .exchange()
-                .expectStatus().isOk();
+                .expectStatus().isOk()
+                .expectBody(Vendor.class)
+                .isEqualTo(patched);
 
-        Mockito.verify(vendorRepository).findById(anyString());
-        Mockito.verify(vendorRepository).save(any(Vendor.class));
+        Mockito.verify(vendorRepository).patch(anyString(), any(Vendor.class), isNull());
+        Mockito.verify(vendorRepository, never()).findById(anyString());
+        Mockito.verify(vendorRepository, never()).save(any(Vendor.class));
     }
 
     @Test
@@ -115,18 +575,17 @@ public class VendorControllerTest {
 
         Vendor vendor = Vendor.builder().firstName("Bob").lastName("Bobbins").build();
 
-        given(vendorRepository.findById(anyString()))
+        given(vendorRepository.patch(anyString(), any(Vendor.class), isNull()))
                 .willReturn(Mono.just(vendor));
 
-        given(vendorRepository.save(any(Vendor.class)))
-                .willReturn(Mono.empty());
-
         webTestClient.patch().uri(BASE_URL + "/dummyId")
                 .body(Mono.just(vendor), Vendor.class)
                 .exchange()
-                .expectStatus().isOk();
+                .expectStatus().isOk()
+                .expectBody(Vendor.class)
+                .isEqualTo(vendor);
 
-        Mockito.verify(vendorRepository).findById(anyString());
+        Mockito.verify(vendorRepository).patch(anyString(), any(Vendor.class), isNull());
         Mockito.verify(vendorRepository, never()).save(any(Vendor.class));
     }
 
@@ -135,18 +594,15 @@ public class VendorControllerTest {
 
         Vendor vendor = Vendor.builder().firstName("Bob").lastName("Bobbins").build();
 
-        given(vendorRepository.findById(anyString()))
-                .willReturn(Mono.empty());
-
-        given(vendorRepository.save(any(Vendor.class)))
+        given(vendorRepository.patch(anyString(), any(Vendor.class), isNull()))
                 .willReturn(Mono.empty());
 
         webTestClient.patch().uri(BASE_URL + "/dummyId")
                 .body(Mono.just(vendor), Vendor.class)
                 .exchange()
-                .expectStatus().is5xxServerError();
+                .expectStatus().isNotFound();
 
-        Mockito.verify(vendorRepository).findById(anyString());
+        Mockito.verify(vendorRepository).patch(anyString(), any(Vendor.class), isNull());
         Mockito.verify(vendorRepository, never()).save(any(Vendor.class));
     }
 
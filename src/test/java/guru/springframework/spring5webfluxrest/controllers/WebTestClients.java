@@ -0,0 +1,23 @@
+package guru.springframework.spring5webfluxrest.controllers;
+
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Binds controllers so their handlers run under blocking call detection.
+ * <p>
+ * The mock server calls a handler on the thread that makes the request, which the
+ * detector does not watch. Subscribing on a Reactor parallel worker instead puts the
+ * handler, and the repository calls it makes, where an event loop would run them.
+ */
+final class WebTestClients {
+
+    private WebTestClients() {
+    }
+
+    static WebTestClient bindToController(Object... controllers) {
+        return WebTestClient.bindToController(controllers)
+                .webFilter((exchange, chain) -> chain.filter(exchange).subscribeOn(Schedulers.parallel()))
+                .build();
+    }
+}
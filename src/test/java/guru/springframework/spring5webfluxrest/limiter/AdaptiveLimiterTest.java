@@ -0,0 +1,94 @@
+package guru.springframework.spring5webfluxrest.limiter;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void admitsUpToTheLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10, 2.0, 0.2);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void growsWhileBusyAndLatencyIsSteady() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 100, 2.0, 0.2);
+        acquireAll(limiter);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(FAST);
+        }
+
+        assertTrue(limiter.getLimit() > 10);
+    }
+
+    @Test
+    public void doesNotGrowWhileIdle() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 100, 2.0, 0.2);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(FAST);
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void shrinksWhenLatencyRises() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(50, 5, 100, 2.0, 0.2);
+        acquireAll(limiter);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(FAST);
+        }
+        int before = limiter.getLimit();
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(SLOW);
+        }
+
+        assertTrue(limiter.getLimit() < before);
+        assertTrue(limiter.getLimit() >= 5);
+    }
+
+    @Test
+    public void takesSamplesFromManyThreads() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 100, 2.0, 0.2);
+        acquireAll(limiter);
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    limiter.onSample(FAST);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(limiter.getLimit() > 10);
+        assertTrue(limiter.getLimit() <= 100);
+    }
+
+    private static void acquireAll(AdaptiveLimiter limiter) {
+        while (limiter.tryAcquire()) {
+            // fill the limit so the limiter sees itself in use
+        }
+    }
+}
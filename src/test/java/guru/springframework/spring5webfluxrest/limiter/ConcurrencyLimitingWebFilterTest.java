@@ -0,0 +1,105 @@
+package guru.springframework.spring5webfluxrest.limiter;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimitingWebFilterTest {
+
+    private MeterRegistry meterRegistry;
+
+    private ConcurrencyLimiters limiters;
+
+    private ConcurrencyLimitingWebFilter filter;
+
+    @Before
+    public void setUp() {
+        ApiProperties apiProperties = new ApiProperties();
+        apiProperties.getLimiter().getReads().setInitialLimit(1);
+        apiProperties.getLimiter().getWrites().setInitialLimit(1);
+
+        meterRegistry = new SimpleMeterRegistry();
+        limiters = new ConcurrencyLimiters(apiProperties, meterRegistry);
+        filter = new ConcurrencyLimitingWebFilter(limiters, apiProperties);
+    }
+
+    @Test
+    public void shedsBeyondTheLimitWithRetryAfter() {
+        MonoProcessor<Void> pending = MonoProcessor.create();
+        WebFilterChain slow = exchange -> pending;
+
+        MockServerWebExchange first = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors"));
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors"));
+
+        filter.filter(first, slow).subscribe();
+        filter.filter(second, slow).block();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, second.getResponse().getStatusCode());
+        assertEquals("1", second.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, meterRegistry.get("api.limiter.shed").tag("budget", "read").counter().count(), 0);
+
+        // Once the first request completes its unit is returned
+        pending.onComplete();
+        assertEquals(0, limiters.getReads().getInFlight());
+    }
+
+    @Test
+    public void readsAndWritesHaveSeparateBudgets() {
+        MonoProcessor<Void> pending = MonoProcessor.create();
+
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors")),
+                exchange -> pending).subscribe();
+
+        MockServerWebExchange write = MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/vendors"));
+        filter.filter(write, exchange -> Mono.empty()).block();
+
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, write.getResponse().getStatusCode());
+        pending.onComplete();
+    }
+
+    @Test
+    public void ignoresNonApiPaths() {
+        limiters.getReads().tryAcquire();
+
+        MockServerWebExchange health = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+        filter.filter(health, exchange -> Mono.empty()).block();
+
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, health.getResponse().getStatusCode());
+    }
+
+    @Test
+    public void ignoresChangeFeeds() {
+        limiters.getReads().tryAcquire();
+
+        MockServerWebExchange changes = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors/changes"));
+        filter.filter(changes, exchange -> Mono.empty()).block();
+
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, changes.getResponse().getStatusCode());
+    }
+
+    @Test
+    public void exportsHoldNoReadUnit() {
+        MonoProcessor<Void> pending = MonoProcessor.create();
+
+        MockServerWebExchange export = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors/_export"));
+        filter.filter(export, exchange -> pending).subscribe();
+
+        assertEquals(0, limiters.getReads().getInFlight());
+        MockServerWebExchange read = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors"));
+        filter.filter(read, exchange -> Mono.empty()).block();
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, read.getResponse().getStatusCode());
+
+        pending.onComplete();
+    }
+}
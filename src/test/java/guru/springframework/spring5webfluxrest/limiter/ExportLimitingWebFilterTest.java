@@ -0,0 +1,52 @@
+package guru.springframework.spring5webfluxrest.limiter;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import static org.junit.Assert.*;
+
+public class ExportLimitingWebFilterTest {
+
+    private ExportLimitingWebFilter filter;
+
+    @Before
+    public void setUp() {
+        ApiProperties apiProperties = new ApiProperties();
+        apiProperties.getExport().setMaxConcurrent(1);
+
+        // The cap holds even without adaptive limiting
+        apiProperties.getLimiter().setEnabled(false);
+
+        filter = new ExportLimitingWebFilter(apiProperties);
+    }
+
+    @Test
+    public void limitsConcurrentExports() {
+        MonoProcessor<Void> pending = MonoProcessor.create();
+
+        MockServerWebExchange first = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors/_export"));
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors/_export"));
+        filter.filter(first, exchange -> pending).subscribe();
+        filter.filter(second, exchange -> Mono.empty()).block();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, second.getResponse().getStatusCode());
+        assertEquals("1", second.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        // Other requests are not counted
+        MockServerWebExchange read = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors"));
+        filter.filter(read, exchange -> Mono.empty()).block();
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, read.getResponse().getStatusCode());
+
+        pending.onComplete();
+        MockServerWebExchange third = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/vendors/_export"));
+        filter.filter(third, exchange -> Mono.empty()).block();
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, third.getResponse().getStatusCode());
+    }
+}
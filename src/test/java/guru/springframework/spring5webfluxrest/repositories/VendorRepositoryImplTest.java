@@ -0,0 +1,112 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+
+public class VendorRepositoryImplTest {
+
+    private ReactiveMongoOperations mongoOperations;
+
+    private VendorRepositoryImpl repository;
+
+    @Before
+    public void setUp() {
+        mongoOperations = Mockito.mock(ReactiveMongoOperations.class);
+        repository = new VendorRepositoryImpl(mongoOperations);
+    }
+
+    @Test
+    public void patchIssuesSingleConditionalUpdate() {
+        Vendor patched = Vendor.builder().id("dummyId").firstName("Bob").lastName("Miggins").build();
+
+        given(mongoOperations.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Vendor.class)))
+                .willReturn(Mono.just(patched));
+
+        StepVerifier.create(repository.patch("dummyId", Vendor.builder().lastName("Miggins").build(), null))
+                .expectNext(patched)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        Mockito.verify(mongoOperations).findAndModify(query.capture(), update.capture(),
+                options.capture(), eq(Vendor.class));
+
+        // Only matches when the stored value differs, so an unchanged vendor is never written
+        assertTrue(query.getValue().getQueryObject().containsKey("$or"));
+        assertTrue(update.getValue().modifies("lastName"));
+        assertTrue(update.getValue().modifies("lastNameLower"));
+        assertFalse(update.getValue().modifies("firstName"));
+        assertTrue(update.getValue().modifies("version"));
+        assertTrue(options.getValue().isReturnNew());
+        Mockito.verify(mongoOperations, never()).findById(anyString(), eq(Vendor.class));
+    }
+
+    @Test
+    public void patchWithoutChangesOnlyReads() {
+        Vendor vendor = Vendor.builder().id("dummyId").firstName("Bob").lastName("Bobbins").build();
+
+        given(mongoOperations.findById(anyString(), eq(Vendor.class)))
+                .willReturn(Mono.just(vendor));
+
+        StepVerifier.create(repository.patch("dummyId", new Vendor(), null))
+                .expectNext(vendor)
+                .verifyComplete();
+
+        Mockito.verify(mongoOperations, never()).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Vendor.class));
+    }
+
+    @Test
+    public void patchUnchangedFallsBackToCurrentDocument() {
+        Vendor vendor = Vendor.builder().id("dummyId").firstName("Bob").lastName("Bobbins").build();
+
+        given(mongoOperations.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Vendor.class)))
+                .willReturn(Mono.empty());
+        given(mongoOperations.findById(anyString(), eq(Vendor.class)))
+                .willReturn(Mono.just(vendor));
+
+        StepVerifier.create(repository.patch("dummyId", vendor, null))
+                .expectNext(vendor)
+                .verifyComplete();
+    }
+
+    @Test
+    public void patchWithStaleVersionConflicts() {
+        Vendor vendor = Vendor.builder().id("dummyId").version(4L).firstName("Bob").lastName("Bobbins").build();
+
+        given(mongoOperations.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Vendor.class)))
+                .willReturn(Mono.empty());
+        given(mongoOperations.findById(anyString(), eq(Vendor.class)))
+                .willReturn(Mono.just(vendor));
+
+        StepVerifier.create(repository.patch("dummyId", Vendor.builder().lastName("Miggins").build(), 3L))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoOperations).findAndModify(query.capture(), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Vendor.class));
+        assertEquals(3L, query.getValue().getQueryObject().get("version"));
+    }
+}
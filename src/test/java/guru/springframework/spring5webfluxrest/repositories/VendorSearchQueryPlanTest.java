@@ -0,0 +1,141 @@
+package guru.springframework.spring5webfluxrest.repositories;
+
+import guru.springframework.spring5webfluxrest.config.MongoIndexInitializer;
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult.Status;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the search queries against an embedded Mongo and fails if the winning plan of
+ * any of them scans the collection instead of an index, or scans more of an index than
+ * it returns.
+ */
+@RunWith(SpringRunner.class)
+@DataMongoTest
+@Import({MongoIndexInitializer.class, VendorSearchKeys.class})
+@TestPropertySource(properties = {"spring.data.mongodb.host=localhost", "spring.data.mongodb.port=0"})
+public class VendorSearchQueryPlanTest {
+
+    @Autowired
+    private ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Before
+    public void setUp() {
+        vendorRepository.deleteAll().block();
+
+        List<Vendor> vendors = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            vendors.add(Vendor.builder().firstName("First" + i).lastName("Last" + i).build());
+        }
+        vendorRepository.insertBatch(vendors).block();
+        vendorRepository.save(Vendor.builder().firstName("Ozzy").lastName("Osbourne").build()).block();
+    }
+
+    @Test
+    public void prefixSearchUsesIndexes() {
+        assertUsesIndex(VendorRepositoryImpl.prefixQuery("last1", 20));
+
+        assertEquals(11, vendorRepository.searchByNamePrefix("LAST1", 20).count().block().longValue());
+        assertEquals(1, vendorRepository.searchByNamePrefix("osb", 20).count().block().longValue());
+    }
+
+    @Test
+    public void prefixSearchScansOnlyMatchingKeys() {
+        Document stats = (Document) explain(VendorRepositoryImpl.prefixQuery("last1", 20), "executionStats")
+                .get("executionStats");
+
+        // last1 and last10-19 from the lastName index, nothing from the firstName one; a
+        // scan of every key would examine all 202 of them
+        assertEquals(11, stats.getInteger("nReturned").intValue());
+        assertTrue("Keys examined: " + stats.getInteger("totalKeysExamined"),
+                stats.getInteger("totalKeysExamined") <= 11 + 2);
+    }
+
+    @Test
+    public void patchesKeepTheSearchKeys() {
+        Vendor ozzy = vendorRepository.searchByNamePrefix("osb", 20).blockFirst();
+        vendorRepository.patch(ozzy.getId(), Vendor.builder().lastName("Gillan").build(), null).block();
+
+        assertEquals(0, vendorRepository.searchByNamePrefix("osb", 20).count().block().longValue());
+        assertEquals(1, vendorRepository.searchByNamePrefix("gil", 20).count().block().longValue());
+    }
+
+    @Test
+    public void unchangedBulkPatchKeepsTheVersion() {
+        Vendor ozzy = vendorRepository.searchByNamePrefix("osb", 20).blockFirst();
+
+        BulkOperationResult result = vendorRepository.bulkWrite(Collections.singletonList(
+                BulkOperation.patch(ozzy.getId(), Vendor.builder().lastName("Osbourne").build()))).blockFirst();
+
+        assertEquals(Status.UPDATED, result.getStatus());
+        assertEquals(ozzy.getVersion(), vendorRepository.findById(ozzy.getId()).block().getVersion());
+
+        vendorRepository.bulkWrite(Collections.singletonList(
+                BulkOperation.patch(ozzy.getId(), Vendor.builder().lastName("Gillan").build()))).blockFirst();
+
+        assertEquals(Long.valueOf(ozzy.getVersion() + 1), vendorRepository.findById(ozzy.getId()).block().getVersion());
+    }
+
+    @Test
+    public void textSearchUsesTextIndex() {
+        assertUsesIndex(VendorRepositoryImpl.textQuery("last42", 20));
+
+        assertEquals(1, vendorRepository.searchByText("last42", 20).count().block().longValue());
+    }
+
+    private void assertUsesIndex(Query query) {
+        Document explain = explain(query, "queryPlanner");
+
+        Document winningPlan = (Document) ((Document) explain.get("queryPlanner")).get("winningPlan");
+        List<String> stages = new ArrayList<>();
+        collectStages(winningPlan, stages);
+
+        assertFalse("Collection scan in " + winningPlan.toJson(), stages.contains("COLLSCAN"));
+        assertTrue("No index used in " + winningPlan.toJson(),
+                stages.contains("IXSCAN") || stages.contains("TEXT"));
+    }
+
+    private Document explain(Query query, String verbosity) {
+        return mongoOperations.executeCommand(new Document("explain",
+                new Document("find", mongoOperations.getCollectionName(Vendor.class))
+                        .append("filter", query.getQueryObject())
+                        .append("limit", query.getLimit()))
+                .append("verbosity", verbosity))
+                .block();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collectStages(Document plan, List<String> stages) {
+        stages.add(plan.getString("stage"));
+
+        if (plan.get("inputStage") != null) {
+            collectStages((Document) plan.get("inputStage"), stages);
+        }
+        if (plan.get("inputStages") != null) {
+            for (Document input : (List<Document>) plan.get("inputStages")) {
+                collectStages(input, stages);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package guru.springframework.spring5webfluxrest.repositories.inmemory;
+
+import guru.springframework.spring5webfluxrest.domain.BulkOperation;
+import guru.springframework.spring5webfluxrest.domain.BulkOperationResult.Status;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Sort;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class InMemoryVendorRepositoryTest {
+
+    private InMemoryVendorRepository repository;
+
+    @Before
+    public void setUp() {
+        repository = new InMemoryVendorRepository();
+    }
+
+    @Test
+    public void saveAssignsIdAndIsolatesCallers() {
+        Vendor vendor = Vendor.builder().firstName("Bob").lastName("Bobbins").build();
+
+        repository.save(vendor).block();
+        assertNotNull(vendor.getId());
+
+        // Mutating the saved instance must not reach into the store
+        vendor.setLastName("Changed");
+
+        StepVerifier.create(repository.findById(vendor.getId()))
+                .assertNext(found -> assertEquals("Bobbins", found.getLastName()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void patchOnlyWritesChanges() {
+        Vendor vendor = repository.save(Vendor.builder().firstName("Bob").lastName("Bobbins").build()).block();
+
+        StepVerifier.create(repository.patch(vendor.getId(), Vendor.builder().lastName("Miggins").build(), null))
+                .assertNext(patched -> {
+                    assertEquals("Bob", patched.getFirstName());
+                    assertEquals("Miggins", patched.getLastName());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(repository.patch("missing", Vendor.builder().lastName("Miggins").build(), null))
+                .verifyComplete();
+    }
+
+    @Test
+    public void writesIncrementVersionAndRejectStaleOnes() {
+        Vendor vendor = repository.save(Vendor.builder().firstName("Bob").lastName("Bobbins").build()).block();
+        assertEquals(Long.valueOf(0), vendor.getVersion());
+
+        StepVerifier.create(repository.patch(vendor.getId(), Vendor.builder().lastName("Miggins").build(), 0L))
+                .assertNext(patched -> assertEquals(Long.valueOf(1), patched.getVersion()))
+                .verifyComplete();
+
+        StepVerifier.create(repository.replace(vendor.getId(), Vendor.builder().firstName("Jim").build(), 0L))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+
+        StepVerifier.create(repository.replace(vendor.getId(), Vendor.builder().firstName("Jim").build(), 1L))
+                .assertNext(replaced -> {
+                    assertEquals(Long.valueOf(2), replaced.getVersion());
+                    assertNull(replaced.getLastName());
+                })
+                .verifyComplete();
+
+        // save with a stale version conflicts, as with @Version on Mongo
+        vendor.setVersion(1L);
+        StepVerifier.create(repository.save(vendor))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+    }
+
+    @Test
+    public void pagesAreOrderedById() {
+        repository.saveAll(Arrays.asList(
+                Vendor.builder().id("c").lastName("C").build(),
+                Vendor.builder().id("a").lastName("A").build(),
+                Vendor.builder().id("b").lastName("B").build())).blockLast();
+
+        StepVerifier.create(repository.findPage(null, 2).map(Vendor::getId))
+                .expectNext("a", "b")
+                .verifyComplete();
+
+        StepVerifier.create(repository.findPage("b", 2).map(Vendor::getId))
+                .expectNext("c")
+                .verifyComplete();
+    }
+
+    @Test
+    public void insertRejectsDuplicates() {
+        repository.insert(Vendor.builder().id("a").lastName("A").build()).block();
+
+        StepVerifier.create(repository.insert(Vendor.builder().id("a").lastName("B").build()))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+
+        StepVerifier.create(repository.insertBatch(Arrays.asList(
+                Vendor.builder().id("a").lastName("A").build(),
+                Vendor.builder().id("b").lastName("B").build())))
+                .assertNext(result -> {
+                    assertEquals(1, result.getInserted());
+                    assertEquals(1, result.getFailed());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void indexFollowsUpdates() {
+        repository.save(Vendor.builder().id("a").firstName("Ozzy").lastName("Osbourne").build()).block();
+        repository.save(Vendor.builder().id("b").firstName("Rob").lastName("Halford").build()).block();
+
+        StepVerifier.create(repository.findByIndexPrefix("lastName", "osb").map(Vendor::getId))
+                .expectNext("a")
+                .verifyComplete();
+
+        repository.patch("a", Vendor.builder().lastName("Gillan").build(), null).block();
+
+        StepVerifier.create(repository.findByIndexPrefix("lastName", "osb")).verifyComplete();
+        StepVerifier.create(repository.findByIndex("lastName", "gillan").map(Vendor::getId))
+                .expectNext("a")
+                .verifyComplete();
+    }
+
+    @Test
+    public void categoryIndexFollowsPatches() {
+        Vendor bob = repository.save(Vendor.builder().id("2").lastName("Bobbins")
+                .categoryIds(Arrays.asList("fruits", "nuts")).build()).block();
+        repository.save(Vendor.builder().id("1").lastName("Jimmins")
+                .categoryIds(Arrays.asList("nuts")).build()).block();
+
+        StepVerifier.create(repository.findByCategoryId("nuts").map(Vendor::getId))
+                .expectNext("1", "2")
+                .verifyComplete();
+
+        repository.patch(bob.getId(), Vendor.builder().categoryIds(Arrays.asList("fruits")).build(), null).block();
+
+        StepVerifier.create(repository.findByCategoryId("nuts").map(Vendor::getId))
+                .expectNext("1")
+                .verifyComplete();
+        StepVerifier.create(repository.findByCategoryId("fruits").map(Vendor::getId))
+                .expectNext("2")
+                .verifyComplete();
+    }
+
+    @Test
+    public void searchMatchesPrefixesAndWords() {
+        repository.save(Vendor.builder().id("a").firstName("Ozzy").lastName("Osbourne").build()).block();
+        repository.save(Vendor.builder().id("b").firstName("Ronnie James").lastName("Dio").build()).block();
+        repository.save(Vendor.builder().id("c").firstName("Oscar").lastName("Peterson").build()).block();
+
+        StepVerifier.create(repository.searchByNamePrefix("OS", 10).map(Vendor::getId))
+                .expectNext("a", "c")
+                .verifyComplete();
+
+        StepVerifier.create(repository.searchByText("james", 10).map(Vendor::getId))
+                .expectNext("b")
+                .verifyComplete();
+    }
+
+    @Test
+    public void projectionsReadOnlyRequestedFields() {
+        repository.save(Vendor.builder().id("a").firstName("Ozzy").lastName("Osbourne").build()).block();
+
+        StepVerifier.create(repository.findByIdProjected("a", Arrays.asList("id", "lastName")))
+                .assertNext(fields -> {
+                    assertEquals(Arrays.asList("id", "lastName"), new ArrayList<>(fields.keySet()));
+                    assertEquals("Osbourne", fields.get("lastName"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void bulkWriteReportsEachOperation() {
+        Vendor existing = repository.save(Vendor.builder().firstName("Bob").lastName("Bobbins").build()).block();
+
+        StepVerifier.create(repository.bulkWrite(Arrays.asList(
+                BulkOperation.upsert(existing.getId(), Vendor.builder().firstName("Jim").lastName("Jimmins").build()),
+                BulkOperation.upsert(null, Vendor.builder().firstName("Ann").lastName("Annis").build()),
+                BulkOperation.patch("missing", Vendor.builder().lastName("Miggins").build()),
+                BulkOperation.<Vendor>delete(null),
+                BulkOperation.<Vendor>delete(existing.getId()))))
+                .assertNext(result -> assertEquals(Status.UPDATED, result.getStatus()))
+                .assertNext(result -> {
+                    assertEquals(Status.CREATED, result.getStatus());
+                    assertNotNull(result.getId());
+                })
+                .assertNext(result -> assertEquals(Status.NOT_FOUND, result.getStatus()))
+                .assertNext(result -> {
+                    assertEquals(Status.INVALID, result.getStatus());
+                    assertNotNull(result.getError());
+                })
+                .assertNext(result -> assertEquals(Status.DELETED, result.getStatus()))
+                .verifyComplete();
+
+        assertEquals(Long.valueOf(1), repository.count().block());
+    }
+
+    @Test
+    public void queryByExampleMatchesSetProperties() {
+        repository.save(Vendor.builder().firstName("Bob").lastName("Bobbins").build()).block();
+        repository.save(Vendor.builder().firstName("Bob").lastName("Miggins").build()).block();
+        repository.save(Vendor.builder().firstName("Ann").lastName("Annis").build()).block();
+
+        StepVerifier.create(repository.count(Example.of(Vendor.builder().firstName("Bob").build())))
+                .expectNext(2L)
+                .verifyComplete();
+
+        StepVerifier.create(repository.findOne(Example.of(Vendor.builder().firstName("Bob").build())))
+                .expectError(IncorrectResultSizeDataAccessException.class)
+                .verify();
+
+        StepVerifier.create(repository.findOne(Example.of(Vendor.builder().lastName("mig").build(),
+                ExampleMatcher.matching().withIgnoreCase().withStringMatcher(ExampleMatcher.StringMatcher.STARTING))))
+                .assertNext(found -> assertEquals("Miggins", found.getLastName()))
+                .verifyComplete();
+
+        StepVerifier.create(repository.findAll(Example.of(Vendor.builder().firstName("Bob").build()),
+                Sort.by(Sort.Direction.DESC, "lastName")))
+                .assertNext(found -> assertEquals("Miggins", found.getLastName()))
+                .assertNext(found -> assertEquals("Bobbins", found.getLastName()))
+                .verifyComplete();
+
+        StepVerifier.create(repository.exists(Example.of(Vendor.builder().firstName("Jim").build())))
+                .expectNext(false)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,61 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+
+public class CoalescingInterceptorFactoryTest {
+
+    private CategoryRepository repository;
+
+    private MeterRegistry meterRegistry;
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        CategoryRepository target = Mockito.mock(CategoryRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        Category category = Category.builder().id("1").description("Fruits").build();
+        given(target.findById("1")).willReturn(Mono.defer(() -> {
+            queries.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(50)).thenReturn(category);
+        }));
+
+        repository = (CategoryRepository) RepositoryDecoratingPostProcessor.decorate(target,
+                Collections.singletonList(new CoalescingInterceptorFactory(meterRegistry)));
+    }
+
+    @Test
+    public void concurrentLookupsShareOneQuery() {
+        StepVerifier.create(Mono.zip(repository.findById("1"), repository.findById("1"), repository.findById("1")))
+                .assertNext(results -> assertSame(results.getT1(), results.getT3()))
+                .verifyComplete();
+
+        assertEquals(1, queries.get());
+        assertEquals(2.0 / 3, meterRegistry.get("repository.coalescing.ratio")
+                .tag("repository", "CategoryRepository").gauge().value(), 0.001);
+    }
+
+    @Test
+    public void sequentialLookupsQueryAgain() {
+        StepVerifier.create(repository.findById("1")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.findById("1")).expectNextCount(1).verifyComplete();
+
+        assertEquals(2, queries.get());
+    }
+}
@@ -0,0 +1,98 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+public class ReadThroughCacheInterceptorFactoryTest {
+
+    private VendorRepository target;
+
+    private VendorRepository repository;
+
+    private MeterRegistry meterRegistry;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        target = Mockito.mock(VendorRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        ApiProperties apiProperties = new ApiProperties();
+        apiProperties.getCache().setEnabled(true);
+
+        repository = (VendorRepository) RepositoryDecoratingPostProcessor.decorate(target,
+                Collections.singletonList(new ReadThroughCacheInterceptorFactory(apiProperties, meterRegistry)));
+    }
+
+    @Test
+    public void findByIdIsLoadedOnce() {
+        Vendor vendor = Vendor.builder().id("1").firstName("Bob").lastName("Bobbins").build();
+        given(target.findById("1")).willReturn(counting(vendor));
+
+        StepVerifier.create(repository.findById("1")).expectNext(vendor).verifyComplete();
+        StepVerifier.create(repository.findById("1")).expectNext(vendor).verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertNotNull(meterRegistry.find("cache.load.latency").tag("cache", "VendorRepository").timeGauge());
+    }
+
+    @Test
+    public void missingVendorIsNotCached() {
+        given(target.findById("1")).willReturn(counting(null));
+
+        StepVerifier.create(repository.findById("1")).verifyComplete();
+        StepVerifier.create(repository.findById("1")).verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void saveRefreshesCachedVendor() {
+        Vendor before = Vendor.builder().id("1").firstName("Bob").lastName("Bobbins").build();
+        Vendor after = Vendor.builder().id("1").firstName("Bob").lastName("Miggins").build();
+        given(target.findById("1")).willReturn(counting(before));
+        given(target.save(any(Vendor.class))).willReturn(Mono.just(after));
+
+        StepVerifier.create(repository.findById("1")).expectNext(before).verifyComplete();
+        StepVerifier.create(repository.save(after)).expectNext(after).verifyComplete();
+        StepVerifier.create(repository.findById("1")).expectNext(after).verifyComplete();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void deleteInvalidatesCachedVendor() {
+        Vendor vendor = Vendor.builder().id("1").firstName("Bob").lastName("Bobbins").build();
+        given(target.findById("1")).willReturn(counting(vendor));
+        given(target.deleteById("1")).willReturn(Mono.empty());
+
+        StepVerifier.create(repository.findById("1")).expectNext(vendor).verifyComplete();
+        StepVerifier.create(repository.deleteById("1")).verifyComplete();
+        StepVerifier.create(repository.findById("1")).expectNext(vendor).verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+
+    private Mono<Vendor> counting(Vendor vendor) {
+        return Mono.defer(() -> {
+            loads.incrementAndGet();
+            return Mono.justOrEmpty(vendor);
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+
+public class RepositoryMetricsInterceptorFactoryTest {
+
+    private VendorRepository target;
+
+    private VendorRepository repository;
+
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        target = Mockito.mock(VendorRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        repository = (VendorRepository) RepositoryDecoratingPostProcessor.decorate(target,
+                Collections.singletonList(new RepositoryMetricsInterceptorFactory(meterRegistry)));
+    }
+
+    @Test
+    public void successfulCallsAreTimed() {
+        given(target.findAll()).willReturn(Flux.just(new Vendor(), new Vendor()));
+
+        StepVerifier.create(repository.findAll()).expectNextCount(2).verifyComplete();
+
+        assertEquals(1, meterRegistry.get("repository.invocations")
+                .tags("repository", "VendorRepository", "method", "findAll", "outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    public void failedCallsAreCounted() {
+        given(target.findById("1")).willReturn(Mono.error(new IllegalStateException("boom")));
+
+        StepVerifier.create(repository.findById("1")).expectError(IllegalStateException.class).verify();
+
+        assertEquals(1, meterRegistry.get("repository.invocations")
+                .tags("method", "findById", "outcome", "error")
+                .timer().count());
+        assertEquals(1, meterRegistry.get("repository.errors")
+                .tags("method", "findById", "exception", "IllegalStateException")
+                .counter().count(), 0);
+    }
+}
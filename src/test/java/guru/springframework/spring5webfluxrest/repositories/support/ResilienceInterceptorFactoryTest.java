@@ -0,0 +1,208 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.Category;
+import guru.springframework.spring5webfluxrest.exceptions.DatastoreTimeoutException;
+import guru.springframework.spring5webfluxrest.exceptions.DatastoreUnavailableException;
+import guru.springframework.spring5webfluxrest.limiter.AdaptiveLimiter;
+import guru.springframework.spring5webfluxrest.limiter.ConcurrencyLimiters;
+import guru.springframework.spring5webfluxrest.repositories.CategoryRepository;
+import guru.springframework.spring5webfluxrest.repositories.inmemory.InMemoryCategoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+
+public class ResilienceInterceptorFactoryTest {
+
+    private CategoryRepository target;
+
+    private ApiProperties apiProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private final Category category = Category.builder().id("1").description("Fruits").build();
+
+    @Before
+    public void setUp() {
+        target = Mockito.mock(CategoryRepository.class);
+        apiProperties = new ApiProperties();
+        meterRegistry = new SimpleMeterRegistry();
+
+        apiProperties.getResilience().setReadDeadline(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void missedDeadlineIsATimeout() {
+        given(target.findById("1")).willReturn(Mono.delay(Duration.ofSeconds(5)).thenReturn(category));
+
+        StepVerifier.create(decorate().findById("1"))
+                .expectError(DatastoreTimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(1.0, meterRegistry.get("repository.deadline.exceeded")
+                .tags("repository", "CategoryRepository", "method", "findById").counter().count(), 0);
+    }
+
+    @Test
+    public void deadlineIsPassedToTheQuery() {
+        apiProperties.getResilience().getDeadlines().put("CategoryRepository.findById", Duration.ofSeconds(30));
+
+        given(target.findById("1")).willReturn(Mono.subscriberContext()
+                .map(context -> {
+                    long remaining = Deadline.remainingMillis(context);
+                    assertTrue(remaining > 10_000 && remaining <= 30_000);
+                    return category;
+                }));
+
+        StepVerifier.create(decorate().findById("1"))
+                .expectNext(category)
+                .verifyComplete();
+    }
+
+    @Test
+    public void slowConsumerDoesNotExhaustTheDeadline() {
+        Category other = Category.builder().id("2").description("Nuts").build();
+        given(target.findAll()).willReturn(Flux.just(category, other));
+
+        StepVerifier.create(decorate().findAll(), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(300))
+                .thenRequest(1)
+                .expectNext(category)
+                .expectNoEvent(Duration.ofMillis(300))
+                .thenRequest(1)
+                .expectNext(other)
+                .verifyComplete();
+    }
+
+    @Test
+    public void stalledStreamTimesOut() {
+        given(target.findAll()).willReturn(Flux.concat(Flux.just(category), Flux.never()));
+
+        StepVerifier.create(decorate().findAll())
+                .expectNext(category)
+                .expectError(DatastoreTimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void slowLookupIsHedged() {
+        apiProperties.getResilience().getHedge().setEnabled(true);
+        apiProperties.getResilience().getHedge().setDelay(Duration.ofMillis(10));
+
+        // The first subscription is slow, its repeat is not
+        given(target.findById("1")).willReturn(Mono.defer(() -> queries.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(5)).thenReturn(category)
+                : Mono.just(category)));
+
+        StepVerifier.create(decorate().findById("1"))
+                .expectNext(category)
+                .verifyComplete();
+
+        assertEquals(2, queries.get());
+        assertEquals(1.0, meterRegistry.get("repository.hedge.wins").counter().count(), 0);
+    }
+
+    @Test
+    public void failingDatastoreOpensTheCircuit() {
+        apiProperties.getResilience().getBreaker().setWindowSize(4);
+        apiProperties.getResilience().getBreaker().setMinimumCalls(4);
+
+        given(target.findById("1")).willReturn(Mono.defer(() -> {
+            queries.incrementAndGet();
+            return Mono.error(new DataAccessResourceFailureException("down"));
+        }));
+
+        CategoryRepository repository = decorate();
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(repository.findById("1"))
+                    .expectError(DataAccessResourceFailureException.class)
+                    .verify();
+        }
+
+        StepVerifier.create(repository.findById("1"))
+                .expectError(DatastoreUnavailableException.class)
+                .verify();
+
+        assertEquals(4, queries.get());
+        assertEquals(1.0, meterRegistry.get("repository.circuit.state").gauge().value(), 0);
+    }
+
+    @Test
+    public void injectedLatencyTimesOut() {
+        apiProperties.getInMemory().setLatency(Duration.ofSeconds(5));
+
+        CategoryRepository repository = (CategoryRepository) RepositoryDecoratingPostProcessor.decorate(
+                new InMemoryCategoryRepository(), Arrays.asList(
+                        new ResilienceInterceptorFactory(apiProperties, meterRegistry, noSecondary()),
+                        new LatencyInjectionInterceptorFactory(apiProperties)));
+
+        StepVerifier.create(repository.findById("1"))
+                .expectError(DatastoreTimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void missedDeadlinesShrinkTheLimit() {
+        ConcurrencyLimiters limiters = new ConcurrencyLimiters(apiProperties, meterRegistry);
+        AdaptiveLimiter reads = limiters.getReads();
+
+        // The limit only moves while it is in use
+        int held = 0;
+        while (reads.tryAcquire()) {
+            held++;
+        }
+        assertTrue(held > 0);
+
+        given(target.findById("1")).willReturn(Mono.defer(() -> queries.incrementAndGet() <= 5
+                ? Mono.just(category)
+                : Mono.never()));
+
+        CategoryRepository repository = (CategoryRepository) RepositoryDecoratingPostProcessor.decorate(
+                target, Arrays.asList(
+                        new ResilienceInterceptorFactory(apiProperties, meterRegistry, noSecondary()),
+                        new LimiterSamplingInterceptorFactory(limiters)));
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(repository.findById("1"))
+                    .expectNext(category)
+                    .verifyComplete();
+        }
+        int before = reads.getLimit();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(repository.findById("1"))
+                    .expectError(DatastoreTimeoutException.class)
+                    .verify(Duration.ofSeconds(1));
+        }
+
+        assertTrue(reads.getLimit() < before);
+    }
+
+    private CategoryRepository decorate() {
+        return (CategoryRepository) RepositoryDecoratingPostProcessor.decorate(target, Collections.singletonList(
+                new ResilienceInterceptorFactory(apiProperties, meterRegistry, noSecondary())));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<SecondaryReads> noSecondary() {
+        return Mockito.mock(ObjectProvider.class);
+    }
+}
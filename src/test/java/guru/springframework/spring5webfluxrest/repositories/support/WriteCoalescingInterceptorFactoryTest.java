@@ -0,0 +1,139 @@
+package guru.springframework.spring5webfluxrest.repositories.support;
+
+import guru.springframework.spring5webfluxrest.config.ApiProperties;
+import guru.springframework.spring5webfluxrest.domain.Vendor;
+import guru.springframework.spring5webfluxrest.exceptions.DatastoreTimeoutException;
+import guru.springframework.spring5webfluxrest.repositories.VendorRepository;
+import guru.springframework.spring5webfluxrest.repositories.inmemory.InMemoryVendorRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+
+public class WriteCoalescingInterceptorFactoryTest {
+
+    private InMemoryVendorRepository target;
+
+    private VendorRepository repository;
+
+    private MeterRegistry meterRegistry;
+
+    private ApiProperties apiProperties;
+
+    private WriteCoalescingInterceptorFactory factory;
+
+    @Before
+    public void setUp() {
+        target = new InMemoryVendorRepository();
+        target.save(Vendor.builder().id("1").firstName("Bob").lastName("Bobbins").build()).block();
+
+        apiProperties = new ApiProperties();
+        apiProperties.getWriteBehind().setWindow(Duration.ofMillis(50));
+
+        meterRegistry = new SimpleMeterRegistry();
+        repository = decorate(Collections.emptyList());
+    }
+
+    private VendorRepository decorate(List<RepositoryInterceptorFactory> inner) {
+        ObjectProvider<List<RepositoryInterceptorFactory>> factories = mockProvider();
+        factory = new WriteCoalescingInterceptorFactory(apiProperties, meterRegistry, factories);
+
+        List<RepositoryInterceptorFactory> all = new ArrayList<>(inner);
+        all.add(0, factory);
+        given(factories.getIfAvailable()).willReturn(all);
+
+        return (VendorRepository) RepositoryDecoratingPostProcessor.decorate(target, all);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<List<RepositoryInterceptorFactory>> mockProvider() {
+        return Mockito.mock(ObjectProvider.class);
+    }
+
+    @Test
+    public void writesWithinAWindowMergePerField() {
+        StepVerifier.create(Mono.zip(
+                repository.replace("1", Vendor.builder().firstName("Jim").lastName("Jimmins").build(), null),
+                repository.patch("1", Vendor.builder().lastName("Miggins").build(), null)))
+                .assertNext(acknowledged -> {
+                    assertEquals("Jim", acknowledged.getT1().getFirstName());
+                    assertEquals("Miggins", acknowledged.getT1().getLastName());
+                    assertEquals(acknowledged.getT1(), acknowledged.getT2());
+                })
+                .verifyComplete();
+
+        // Both writes reached the datastore as one
+        assertEquals(Long.valueOf(1), target.findById("1").block().getVersion());
+        assertEquals(0.5, meterRegistry.get("repository.writebehind.ratio")
+                .tag("repository", "VendorRepository").gauge().value(), 0.001);
+        assertEquals(1, meterRegistry.get("repository.writebehind.flush").timer().count());
+    }
+
+    @Test
+    public void stalledFlushMeetsTheWriteDeadline() {
+        apiProperties.getResilience().setWriteDeadline(Duration.ofMillis(100));
+        apiProperties.getInMemory().setLatency(Duration.ofSeconds(5));
+
+        repository = decorate(Arrays.asList(
+                new ResilienceInterceptorFactory(apiProperties, meterRegistry, noSecondary()),
+                new LatencyInjectionInterceptorFactory(apiProperties)));
+
+        StepVerifier.create(repository.patch("1", Vendor.builder().lastName("Miggins").build(), null))
+                .expectError(DatastoreTimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(1.0, meterRegistry.get("repository.deadline.exceeded")
+                .tags("repository", "VendorRepository", "method", "bulkWrite").counter().count(), 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<SecondaryReads> noSecondary() {
+        return Mockito.mock(ObjectProvider.class);
+    }
+
+    @Test
+    public void patchOfMissingDocumentIsEmpty() {
+        StepVerifier.create(repository.patch("2", Vendor.builder().lastName("Miggins").build(), null))
+                .verifyComplete();
+    }
+
+    @Test
+    public void conditionalWritesGoStraightThrough() {
+        StepVerifier.create(repository.patch("1", Vendor.builder().lastName("Miggins").build(), 0L))
+                .assertNext(patched -> assertEquals(Long.valueOf(1), patched.getVersion()))
+                .verifyComplete();
+
+        assertEquals(0, meterRegistry.get("repository.writebehind.writes").counter().count(), 0);
+    }
+
+    @Test
+    public void drainFlushesPendingWrites() {
+        MonoProcessor<Vendor> pending = repository
+                .patch("1", Vendor.builder().lastName("Miggins").build(), null)
+                .toProcessor();
+
+        factory.drain();
+
+        assertEquals("Miggins", pending.peek().getLastName());
+
+        // Once drained, writes are made directly
+        StepVerifier.create(repository.patch("1", Vendor.builder().firstName("Jim").build(), null))
+                .assertNext(patched -> assertEquals(Long.valueOf(2), patched.getVersion()))
+                .verifyComplete();
+        assertEquals(1, meterRegistry.get("repository.writebehind.writes").counter().count(), 0);
+    }
+}